@@ -1,43 +1,71 @@
 package org.example;
 
+import org.example.config.DatabaseConfig;
+import org.example.config.ServerConfig;
 import org.example.controller.AdminController;
 import org.example.controller.AuthController;
+import org.example.controller.JwtAuthFilter;
 import org.example.controller.OtpController;
+import org.example.dao.OtpAttemptDao;
 import org.example.dao.OtpConfigDao;
 import org.example.dao.OtpDao;
+import org.example.dao.OtpPartitionDao;
+import org.example.dao.OutboxDao;
+import org.example.dao.SchemaMigrator;
 import org.example.dao.UserDao;
+import org.example.server.ApiServer;
 import org.example.service.AuthService;
+import org.example.service.OtpAttemptLimiter;
+import org.example.service.OtpConfigCache;
+import org.example.service.OtpGenerationThrottle;
+import org.example.service.OtpHotStore;
 import org.example.service.OtpService;
 import org.example.service.UserService;
 import org.example.service.notification.EmailService;
 import org.example.service.notification.FileService;
+import org.example.service.notification.NotificationDispatcher;
 import org.example.service.notification.SmsService;
 import org.example.service.notification.TelegramService;
+import org.example.service.scheduler.OtpArchiver;
 import org.example.service.scheduler.OtpExpirationScheduler;
+import org.example.service.scheduler.OtpPartitionMaintenance;
 import org.example.util.JwtUtil;
+import org.example.util.OtpCodeGenerator;
 import org.example.util.PasswordUtil;
-import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
 public class Application {
     private static final Logger logger = Logger.getLogger(Application.class.getName());
-    private static final int PORT = 8080;
 
     public static void main(String[] args) throws IOException {
         logger.info("Запуск приложения");
 
+        // Миграции схемы БД (до начала работы с таблицами): без актуальной схемы запуск невозможен
+        if (!new SchemaMigrator().migrate()) {
+            logger.severe("Не удалось обновить схему БД, запуск прерван");
+            DatabaseConfig.close();
+            System.exit(1);
+        }
+
         // Инициализация DAO
         UserDao userDao = new UserDao();
         OtpDao otpDao = new OtpDao();
         OtpConfigDao otpConfigDao = new OtpConfigDao();
+        OutboxDao outboxDao = new OutboxDao();
+        OtpPartitionDao otpPartitionDao = new OtpPartitionDao();
+
+        // Секции таблицы otps: создание заранее и удаление архивированных по сроку хранения
+        OtpPartitionMaintenance partitionMaintenance = new OtpPartitionMaintenance(otpPartitionDao);
+        partitionMaintenance.start();
 
         // Инициализация утилит
         JwtUtil jwtUtil = new JwtUtil();
-        PasswordUtil passwordUtil = new PasswordUtil();
+        OtpCodeGenerator otpCodeGenerator = new OtpCodeGenerator();
+        otpCodeGenerator.start();
+        PasswordUtil passwordUtil = new PasswordUtil(otpCodeGenerator);
 
         // Инициализация сервисов уведомлений
         EmailService emailService = new EmailService();
@@ -45,31 +73,85 @@ public class Application {
         TelegramService telegramService = new TelegramService();
         FileService fileService = new FileService();
 
-        // Инициализация сервисов
-        AuthService authService = new AuthService(userDao, passwordUtil, jwtUtil);
-        UserService userService = new UserService(userDao);
-        OtpService otpService = new OtpService(otpDao, otpConfigDao, emailService, smsService, telegramService, fileService);
+        // Диспетчер доставки уведомлений из outbox (по потоку на канал)
+        NotificationDispatcher notificationDispatcher = new NotificationDispatcher(outboxDao);
+        notificationDispatcher.registerChannel("email",
+                message -> emailService.sendCodeAsync(message.getDestination(), message.getCode()));
+        notificationDispatcher.registerChannel("sms",
+                message -> smsService.sendCodeAsync(message.getDestination(), message.getCode()));
+        notificationDispatcher.registerChannel("telegram",
+                message -> telegramService.sendCodeAsync(message.getDestination(), message.getCode()));
+        notificationDispatcher.registerChannel("file", message -> fileService.saveCodeAsync(
+                message.getDestination(), message.getOperationId(), message.getCode()));
+        notificationDispatcher.start();
 
         // Запуск планировщика для истечения OTP
         OtpExpirationScheduler scheduler = new OtpExpirationScheduler(otpDao);
         scheduler.start();
 
+        // Архивация старых секций otps в сжатые сегменты на диске
+        OtpArchiver otpArchiver = new OtpArchiver(otpDao, otpPartitionDao);
+        otpArchiver.start();
+
+        // Кэш конфигурации OTP с подпиской на изменения в БД
+        OtpConfigCache otpConfigCache = new OtpConfigCache(otpConfigDao);
+        otpConfigCache.start();
+
+        // Горячее хранилище активных OTP (восстанавливается до начала приема запросов)
+        OtpHotStore otpHotStore = new OtpHotStore(otpDao);
+        otpHotStore.start();
+
+        // Счетчики неудачных попыток проверки OTP (синхронизируются между узлами через БД)
+        OtpAttemptLimiter attemptLimiter = new OtpAttemptLimiter(otpDao, otpHotStore, new OtpAttemptDao());
+        attemptLimiter.start();
+
+        // Ограничение частоты генерации OTP по пользователю и адресу доставки
+        OtpGenerationThrottle generationThrottle = new OtpGenerationThrottle();
+
+        // Инициализация сервисов
+        AuthService authService = new AuthService(userDao, passwordUtil, jwtUtil);
+        UserService userService = new UserService(userDao);
+        OtpService otpService = new OtpService(otpDao, otpConfigDao, otpConfigCache,
+                notificationDispatcher, scheduler, otpHotStore, attemptLimiter,
+                generationThrottle, passwordUtil);
+
         // Создание контроллеров
         AuthController authController = new AuthController(authService);
-        AdminController adminController = new AdminController(userService, otpService, jwtUtil);
-        OtpController otpController = new OtpController(otpService, jwtUtil);
+        AdminController adminController = new AdminController(userService, otpService, otpArchiver.getArchive());
+        OtpController otpController = new OtpController(otpService, authService);
 
         // Запуск HTTP сервера
-        HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        ServerConfig serverConfig = new ServerConfig();
+        ExecutorService serverExecutor = serverConfig.createExecutor();
+        ApiServer server = serverConfig.createServer(serverExecutor);
 
         // Настройка контекстов для API
         server.createContext("/api/auth", authController);
-        server.createContext("/api/admin", adminController);
-        server.createContext("/api/otp", otpController);
+        // Защищенные контексты: токен проверяется один раз в фильтре
+        server.createContext("/api/admin", adminController, new JwtAuthFilter(jwtUtil, "ADMIN"));
+        server.createContext("/api/otp", otpController, new JwtAuthFilter(jwtUtil, null));
 
-        server.setExecutor(Executors.newFixedThreadPool(10));
         server.start();
 
-        logger.info("Сервер запущен на порту " + PORT);
+        // Корректная остановка: сервер, планировщик, пул соединений
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            serverExecutor.shutdown();
+            scheduler.stop();
+            otpArchiver.stop();
+            partitionMaintenance.stop();
+            otpConfigCache.stop();
+            otpHotStore.stop();
+            attemptLimiter.stop();
+            otpCodeGenerator.stop();
+            notificationDispatcher.stop();
+            emailService.close();
+            smsService.close();
+            telegramService.close();
+            fileService.close();
+            DatabaseConfig.close();
+        }));
+
+        logger.info("Сервер запущен на порту " + serverConfig.getPort());
     }
 }
@@ -0,0 +1,165 @@
+package org.example.archive;
+
+import org.example.model.Otp;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Каталог сегментов архива OTP на локальном диске.
+ * Сегменты архивируют секцию таблицы otps, имя секции - последняя часть имени сегмента.
+ * Жизненный цикл сегмента:
+ * - *.tmp - записывается, не читается
+ * - *.pending - записан и сброшен на диск, секция еще не отмечена архивированной в БД
+ * - *.seg - секция отмечена архивированной и может быть удалена из БД
+ * Чтение охватывает сегменты .pending и .seg в порядке создания.
+ */
+public class OtpArchive {
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+    private static final String TMP = ".tmp";
+    private static final String PENDING = ".pending";
+    private static final String COMPLETE = ".seg";
+
+    private final Path directory;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * @param directory каталог архива (создается при первой записи)
+     */
+    public OtpArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Создает новый сегмент для записи строк секции
+     * @param partition имя секции таблицы otps
+     */
+    public OtpSegmentWriter createSegment(String partition) throws IOException {
+        Files.createDirectories(directory);
+        String name = "otps-" + LocalDateTime.now().format(NAME_FORMAT)
+                + "-" + String.format("%04d", sequence.incrementAndGet() % 10000) + "-" + partition;
+        return new OtpSegmentWriter(directory.resolve(name + TMP));
+    }
+
+    /**
+     * Завершает запись сегмента: сбрасывает его на диск и делает видимым для чтения (.pending)
+     * @return путь сегмента, ожидающего отметки секции в БД
+     */
+    public Path publish(OtpSegmentWriter writer) throws IOException {
+        writer.finish();
+        return rename(writer.getFile(), TMP, PENDING);
+    }
+
+    /**
+     * Удаляет незавершенный сегмент
+     */
+    public void discard(OtpSegmentWriter writer) {
+        writer.abort();
+    }
+
+    /**
+     * Удаляет опубликованный сегмент, секция которого не была отмечена архивированной
+     */
+    public void delete(Path pending) throws IOException {
+        Files.deleteIfExists(pending);
+    }
+
+    /**
+     * Отмечает, что секция сегмента отмечена архивированной в БД
+     */
+    public void complete(Path pending) throws IOException {
+        rename(pending, PENDING, COMPLETE);
+    }
+
+    /**
+     * Сегменты, секция которых еще не отмечена архивированной (после сбоя)
+     */
+    public List<Path> pendingSegments() throws IOException {
+        return list("*" + PENDING);
+    }
+
+    /**
+     * Имя секции таблицы otps, строки которой записаны в сегмент
+     */
+    public static String partitionOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return name.substring(name.lastIndexOf('-') + 1, name.lastIndexOf('.'));
+    }
+
+    /**
+     * Читает архивные OTP пользователя
+     * @param userId идентификатор пользователя
+     * @param visitor обработчик; false прекращает чтение
+     */
+    public void scanByUserId(long userId, Predicate<Otp> visitor) throws IOException {
+        scan(userId, null, null, visitor);
+    }
+
+    /**
+     * Читает архивные OTP, созданные в диапазоне [from, to)
+     * @param visitor обработчик; false прекращает чтение
+     */
+    public void scanByTimeRange(LocalDateTime from, LocalDateTime to, Predicate<Otp> visitor) throws IOException {
+        scan(null, from, to, visitor);
+    }
+
+    /**
+     * Читает архивные OTP с фильтром по пользователю и диапазону created_at
+     * @param userId пользователь или null
+     * @param from начало диапазона (включительно) или null
+     * @param to конец диапазона (не включительно) или null
+     * @param visitor обработчик; false прекращает чтение
+     */
+    public void scan(Long userId, LocalDateTime from, LocalDateTime to, Predicate<Otp> visitor) throws IOException {
+        long fromMicros = from != null ? ColumnCodec.toMicros(from) : Long.MIN_VALUE;
+        long toMicros = to != null ? ColumnCodec.toMicros(to) : Long.MAX_VALUE;
+        List<Path> segments = list("*{" + PENDING + "," + COMPLETE + "}");
+        for (Path segment : segments) {
+            try (OtpSegmentReader reader = new OtpSegmentReader(segment)) {
+                if (!reader.scan(userId, fromMicros, toMicros, visitor)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<Path> list(String glob) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            stream.forEach(files::add);
+        }
+        // Имя начинается с времени создания
+        files.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+        return files;
+    }
+
+    /**
+     * Атомарное переименование с сохранением каталога на диск
+     */
+    private Path rename(Path file, String fromSuffix, String toSuffix) throws IOException {
+        String name = file.getFileName().toString();
+        Path target = file.resolveSibling(name.substring(0, name.length() - fromSuffix.length()) + toSuffix);
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+            // Не все платформы позволяют синхронизировать каталог
+        }
+        return target;
+    }
+}
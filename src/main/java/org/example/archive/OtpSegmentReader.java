@@ -0,0 +1,200 @@
+package org.example.archive;
+
+import org.example.model.Otp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+
+import static org.example.archive.OtpSegmentWriter.*;
+
+/**
+ * Чтение сегмента архива OTP по блокам.
+ * В памяти находится не более одного блока; блоки, не попадающие в фильтр
+ * по заголовку, пропускаются без чтения, а в подходящих блоках сначала
+ * распаковываются только столбцы фильтра.
+ */
+class OtpSegmentReader implements Closeable {
+    private static final int HEADER_BYTES = 4 + 8 * 4 + 8 * COLUMNS;
+
+    private final Path file;
+    private final RandomAccessFile raf;
+
+    OtpSegmentReader(Path file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file.toFile(), "r");
+        if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+            raf.close();
+            throw new IOException("Неизвестный формат сегмента архива: " + file);
+        }
+    }
+
+    /**
+     * Перебирает строки, подходящие под фильтр
+     * @param userId пользователь или null
+     * @param fromMicros начало диапазона created_at (включительно) или Long.MIN_VALUE
+     * @param toMicros конец диапазона created_at (не включительно) или Long.MAX_VALUE
+     * @param visitor обработчик строки; false прекращает чтение
+     * @return false, если обработчик прекратил чтение
+     */
+    boolean scan(Long userId, long fromMicros, long toMicros, Predicate<Otp> visitor) throws IOException {
+        byte[] header = new byte[HEADER_BYTES];
+        while (raf.getFilePointer() < raf.length()) {
+            Block block = readBlock(header);
+            if (block.maxCreated < fromMicros || block.minCreated >= toMicros
+                    || (userId != null && (userId < block.minUser || userId > block.maxUser))) {
+                block.skip();
+                continue;
+            }
+
+            boolean[] match = new boolean[block.rows];
+            long[] userIds = block.readUnsigned(COL_USER_ID);
+            long[] created = block.readDeltas(COL_CREATED_AT);
+            boolean any = false;
+            for (int i = 0; i < block.rows; i++) {
+                match[i] = (userId == null || userIds[i] == userId)
+                        && created[i] >= fromMicros && created[i] < toMicros;
+                any |= match[i];
+            }
+            if (!any) {
+                block.skip();
+                continue;
+            }
+
+            long[] ids = block.readDeltas(COL_ID);
+            String[] operationIds = block.readDictionary(COL_OPERATION_ID);
+            String[] codes = block.readStrings(COL_CODE);
+            long[] expiresOffsets = block.readSigned(COL_EXPIRES_AT);
+            String[] statuses = block.readDictionary(COL_STATUS);
+            block.skip();
+            for (int i = 0; i < block.rows; i++) {
+                if (!match[i]) {
+                    continue;
+                }
+                Otp otp = new Otp();
+                otp.setId(ids[i]);
+                otp.setUserId(userIds[i]);
+                otp.setOperationId(operationIds[i]);
+                otp.setCode(codes[i]);
+                otp.setCreatedAt(ColumnCodec.fromMicros(created[i]));
+                otp.setExpiresAt(ColumnCodec.fromMicros(created[i] + expiresOffsets[i]));
+                otp.setStatus(statuses[i]);
+                if (!visitor.test(otp)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    private Block readBlock(byte[] header) throws IOException {
+        raf.readFully(header);
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        Block block = new Block();
+        block.rows = buffer.getInt();
+        block.minCreated = buffer.getLong();
+        block.maxCreated = buffer.getLong();
+        block.minUser = buffer.getLong();
+        block.maxUser = buffer.getLong();
+        long offset = raf.getFilePointer();
+        for (int i = 0; i < COLUMNS; i++) {
+            block.offsets[i] = offset;
+            block.compressedLengths[i] = buffer.getInt();
+            block.rawLengths[i] = buffer.getInt();
+            offset += block.compressedLengths[i];
+        }
+        block.end = offset;
+        return block;
+    }
+
+    /**
+     * Заголовок блока и доступ к его столбцам
+     */
+    private final class Block {
+        int rows;
+        long minCreated;
+        long maxCreated;
+        long minUser;
+        long maxUser;
+        final long[] offsets = new long[COLUMNS];
+        final int[] compressedLengths = new int[COLUMNS];
+        final int[] rawLengths = new int[COLUMNS];
+        long end;
+
+        void skip() throws IOException {
+            raf.seek(end);
+        }
+
+        ColumnCodec.Input column(int column) throws IOException {
+            byte[] compressed = new byte[compressedLengths[column]];
+            raf.seek(offsets[column]);
+            raf.readFully(compressed);
+            try {
+                return new ColumnCodec.Input(ColumnCodec.decompress(compressed, rawLengths[column]));
+            } catch (DataFormatException e) {
+                throw new IOException("Поврежден столбец сегмента архива " + file, e);
+            }
+        }
+
+        // Разности с предыдущей строкой (id, created_at)
+        long[] readDeltas(int column) throws IOException {
+            ColumnCodec.Input input = column(column);
+            long[] values = new long[rows];
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                previous += input.readZigZag();
+                values[i] = previous;
+            }
+            return values;
+        }
+
+        long[] readSigned(int column) throws IOException {
+            ColumnCodec.Input input = column(column);
+            long[] values = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                values[i] = input.readZigZag();
+            }
+            return values;
+        }
+
+        long[] readUnsigned(int column) throws IOException {
+            ColumnCodec.Input input = column(column);
+            long[] values = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                values[i] = input.readVarLong();
+            }
+            return values;
+        }
+
+        String[] readStrings(int column) throws IOException {
+            ColumnCodec.Input input = column(column);
+            String[] values = new String[rows];
+            for (int i = 0; i < rows; i++) {
+                values[i] = input.readString();
+            }
+            return values;
+        }
+
+        String[] readDictionary(int column) throws IOException {
+            ColumnCodec.Input input = column(column);
+            String[] dictionary = new String[(int) input.readVarLong()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = input.readString();
+            }
+            String[] values = new String[rows];
+            for (int i = 0; i < rows; i++) {
+                values[i] = dictionary[(int) input.readVarLong()];
+            }
+            return values;
+        }
+    }
+}
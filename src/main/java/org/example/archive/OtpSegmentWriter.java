@@ -0,0 +1,205 @@
+package org.example.archive;
+
+import org.example.model.Otp;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Запись сегмента архива OTP.
+ * Строки накапливаются в блоке по BLOCK_ROWS строк, блок записывается по столбцам:
+ * - id и created_at - разности с предыдущей строкой (строки идут в порядке id)
+ * - expires_at - смещение от created_at
+ * - operation_id и status - словарь блока и номера значений
+ * - user_id и code - как есть
+ * В заголовке блока хранятся диапазоны created_at и user_id, по которым чтение
+ * пропускает блоки без распаковки.
+ * Формат файла: магическое число, версия, затем блоки до конца файла.
+ */
+public class OtpSegmentWriter implements Closeable {
+    static final int MAGIC = 0x4F545053; // "OTPS"
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 8192;
+
+    // Столбцы блока в порядке записи
+    static final int COL_ID = 0;
+    static final int COL_USER_ID = 1;
+    static final int COL_OPERATION_ID = 2;
+    static final int COL_CODE = 3;
+    static final int COL_CREATED_AT = 4;
+    static final int COL_EXPIRES_AT = 5;
+    static final int COL_STATUS = 6;
+    static final int COLUMNS = 7;
+
+    private final Path file;
+    private final FileOutputStream fileStream;
+    private final DataOutputStream out;
+
+    private final ColumnCodec.Output[] columns = new ColumnCodec.Output[COLUMNS];
+    private final Map<String, Integer> operationDictionary = new HashMap<>();
+    private final ColumnCodec.Output operationIndexes = new ColumnCodec.Output();
+    private final Map<String, Integer> statusDictionary = new HashMap<>();
+    private final ColumnCodec.Output statusIndexes = new ColumnCodec.Output();
+
+    private int blockRows;
+    private long previousId;
+    private long previousCreated;
+    private long minCreated;
+    private long maxCreated;
+    private long minUser;
+    private long maxUser;
+    private long rows;
+    private boolean closed;
+
+    OtpSegmentWriter(Path file) throws IOException {
+        this.file = file;
+        this.fileStream = new FileOutputStream(file.toFile());
+        this.out = new DataOutputStream(new BufferedOutputStream(fileStream, 64 * 1024));
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = new ColumnCodec.Output();
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Количество записанных строк
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Добавляет строку. Строки должны добавляться в порядке возрастания id.
+     */
+    public void append(Otp otp) throws IOException {
+        long id = otp.getId();
+        long userId = otp.getUserId();
+        long created = ColumnCodec.toMicros(otp.getCreatedAt());
+        long expires = ColumnCodec.toMicros(otp.getExpiresAt());
+
+        if (blockRows == 0) {
+            minCreated = maxCreated = created;
+            minUser = maxUser = userId;
+        } else {
+            minCreated = Math.min(minCreated, created);
+            maxCreated = Math.max(maxCreated, created);
+            minUser = Math.min(minUser, userId);
+            maxUser = Math.max(maxUser, userId);
+        }
+
+        columns[COL_ID].writeZigZag(id - previousId);
+        columns[COL_USER_ID].writeVarLong(userId);
+        operationIndexes.writeVarLong(indexOf(operationDictionary, otp.getOperationId()));
+        columns[COL_CODE].writeString(otp.getCode());
+        columns[COL_CREATED_AT].writeZigZag(created - previousCreated);
+        columns[COL_EXPIRES_AT].writeZigZag(expires - created);
+        statusIndexes.writeVarLong(indexOf(statusDictionary, otp.getStatus()));
+        previousId = id;
+        previousCreated = created;
+
+        rows++;
+        if (++blockRows == BLOCK_ROWS) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Записывает оставшиеся строки и сбрасывает файл на диск (fsync)
+     */
+    void finish() throws IOException {
+        if (blockRows > 0) {
+            flushBlock();
+        }
+        out.flush();
+        fileStream.getChannel().force(true);
+        close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /**
+     * Закрывает и удаляет незавершенный сегмент
+     */
+    void abort() {
+        try {
+            close();
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Незавершенный сегмент не читается (расширение .tmp)
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        encodeDictionary(columns[COL_OPERATION_ID], operationDictionary, operationIndexes);
+        encodeDictionary(columns[COL_STATUS], statusDictionary, statusIndexes);
+
+        byte[][] compressed = new byte[COLUMNS][];
+        for (int i = 0; i < COLUMNS; i++) {
+            compressed[i] = columns[i].compress();
+        }
+        out.writeInt(blockRows);
+        out.writeLong(minCreated);
+        out.writeLong(maxCreated);
+        out.writeLong(minUser);
+        out.writeLong(maxUser);
+        for (int i = 0; i < COLUMNS; i++) {
+            out.writeInt(compressed[i].length);
+            out.writeInt(columns[i].size());
+        }
+        for (byte[] column : compressed) {
+            out.write(column);
+        }
+
+        for (ColumnCodec.Output column : columns) {
+            column.reset();
+        }
+        operationDictionary.clear();
+        operationIndexes.reset();
+        statusDictionary.clear();
+        statusIndexes.reset();
+        blockRows = 0;
+        previousId = 0;
+        previousCreated = 0;
+    }
+
+    private static int indexOf(Map<String, Integer> dictionary, String value) {
+        Integer index = dictionary.get(value);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Столбец со словарем: размер словаря, значения в порядке номеров, затем номера строк
+     */
+    private static void encodeDictionary(ColumnCodec.Output column, Map<String, Integer> dictionary,
+                                         ColumnCodec.Output indexes) {
+        String[] values = new String[dictionary.size()];
+        dictionary.forEach((value, index) -> values[index] = value);
+        column.writeVarLong(values.length);
+        for (String value : values) {
+            column.writeString(value);
+        }
+        column.write(indexes);
+    }
+}
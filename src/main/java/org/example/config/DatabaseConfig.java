@@ -1,28 +1,48 @@
 package org.example.config;
 
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /*
 Конфигурация подключения к PostgreSQL
 - Регистрирует драйвер БД при загрузке класса
-- Предоставляет метод getConnection() для получения соединения
+- Создает ограниченный пул соединений (HikariCP) по настройкам из database.properties
+- Предоставляет метод getConnection() для получения соединения из пула
 - Обрабатывает ошибки подключения
 */
 public class DatabaseConfig {
     // Логирование ошибок
     private static final Logger logger = Logger.getLogger(DatabaseConfig.class.getName());
 
-    // Параметры подключения (в реальном проекте лучше вынести в конфиг)
-    private static final String JDBC_URL = "jdbc:postgresql://localhost:5432/otp_db";
-    private static final String JDBC_USER = "otp_user";
-    private static final String JDBC_PASSWORD = "otp_password";
+    // Файл с параметрами подключения и пула
+    private static final String CONFIG_FILE = "database.properties";
+
+    // Параметры подключения по умолчанию (используются, если не заданы в конфиге или окружении)
+    private static final String DEFAULT_JDBC_URL = "jdbc:postgresql://localhost:5432/otp_db";
+    private static final String DEFAULT_JDBC_USER = "otp_user";
+    private static final String DEFAULT_JDBC_PASSWORD = "otp_password";
+
+    // Метрики ожидания и использования соединений
+    private static final PoolMetricsTracker.Factory metricsFactory = new PoolMetricsTracker.Factory();
+
+    // Пул соединений
+    private static final HikariDataSource dataSource;
 
-    // Статический блок для регистрации драйвера при инициализации класса
+    // Размер порции чтения многострочных запросов (0 - весь результат сразу)
+    private static final int fetchSize;
+
+    // Статический блок для регистрации драйвера и создания пула при инициализации класса
     static {
         try {
             Class.forName("org.postgresql.Driver");
@@ -30,10 +50,117 @@ public class DatabaseConfig {
             logger.log(Level.SEVERE, "PostgreSQL JDBC драйвер не найден", e);
             throw new RuntimeException("PostgreSQL JDBC драйвер не найден", e);
         }
+        Properties props = loadConfig();
+        dataSource = new HikariDataSource(buildPoolConfig(props));
+        fetchSize = intProperty(props, "db.fetch_size", 500);
+        logger.info("Пул соединений " + dataSource.getPoolName() + " создан, размер: "
+                + dataSource.getMaximumPoolSize());
+    }
+
+    /**
+     * Загружает параметры подключения из файла database.properties.
+     * Переменные окружения JDBC_URL, JDBC_USER, JDBC_PASSWORD имеют приоритет над файлом.
+     */
+    private static Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = DatabaseConfig.class.getClassLoader().getResourceAsStream(CONFIG_FILE)) {
+            if (is != null) {
+                props.load(is);
+            } else {
+                logger.warning(CONFIG_FILE + " не найден, используются параметры по умолчанию");
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации БД", e);
+        }
+        overrideFromEnv(props, "JDBC_URL", "db.url");
+        overrideFromEnv(props, "JDBC_USER", "db.user");
+        overrideFromEnv(props, "JDBC_PASSWORD", "db.password");
+        return props;
+    }
+
+    private static void overrideFromEnv(Properties props, String envName, String key) {
+        String value = System.getenv(envName);
+        if (value != null && !value.isEmpty()) {
+            props.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Формирует конфигурацию пула:
+     * - ограничение размера пула и минимальное число простаивающих соединений
+     * - таймауты ожидания соединения и валидации
+     * - максимальное время жизни соединения и порог обнаружения утечек
+     * - кэш подготовленных запросов драйвера на каждом соединении:
+     *   после prepareThreshold выполнений запрос подготавливается на сервере и
+     *   дальше выполняется без повторного разбора и планирования
+     */
+    private static HikariConfig buildPoolConfig(Properties props) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(props.getProperty("db.pool.name", "otp-db-pool"));
+        config.setJdbcUrl(props.getProperty("db.url", DEFAULT_JDBC_URL));
+        config.setUsername(props.getProperty("db.user", DEFAULT_JDBC_USER));
+        config.setPassword(props.getProperty("db.password", DEFAULT_JDBC_PASSWORD));
+
+        config.setMaximumPoolSize(intProperty(props, "db.pool.max_size", 10));
+        config.setMinimumIdle(intProperty(props, "db.pool.min_idle", 2));
+        config.setConnectionTimeout(longProperty(props, "db.pool.connection_timeout_ms", 5_000));
+        config.setValidationTimeout(longProperty(props, "db.pool.validation_timeout_ms", 2_000));
+        config.setIdleTimeout(longProperty(props, "db.pool.idle_timeout_ms", 300_000));
+        config.setMaxLifetime(longProperty(props, "db.pool.max_lifetime_ms", 1_800_000));
+        config.setKeepaliveTime(longProperty(props, "db.pool.keepalive_ms", 120_000));
+        config.setLeakDetectionThreshold(longProperty(props, "db.pool.leak_detection_ms", 10_000));
+
+        config.addDataSourceProperty("prepareThreshold", intProperty(props, "db.jdbc.prepare_threshold", 1));
+        config.addDataSourceProperty("preparedStatementCacheQueries",
+                intProperty(props, "db.jdbc.statement_cache_queries", 256));
+        config.addDataSourceProperty("preparedStatementCacheSizeMiB",
+                intProperty(props, "db.jdbc.statement_cache_size_mib", 5));
+
+        // Не падаем при старте, если БД еще недоступна: пул дозаполнится позже
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(metricsFactory);
+        return config;
     }
 
-    // Метод для получения соединения с БД
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        return Integer.parseInt(props.getProperty(key, String.valueOf(defaultValue)).trim());
+    }
+
+    private static long longProperty(Properties props, String key, long defaultValue) {
+        return Long.parseLong(props.getProperty(key, String.valueOf(defaultValue)).trim());
+    }
+
+    // Метод для получения соединения с БД из пула
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASSWORD);
+        return dataSource.getConnection();
+    }
+
+    // Отдельное соединение вне пула (для долгоживущих сессий, например LISTEN)
+    public static Connection openDedicatedConnection() throws SQLException {
+        return DriverManager.getConnection(dataSource.getJdbcUrl(), dataSource.getUsername(),
+                dataSource.getPassword());
+    }
+
+    // Размер порции чтения многострочных запросов
+    public static int getFetchSize() {
+        return fetchSize;
+    }
+
+    // Источник данных пула (для компонентов, которым нужен DataSource)
+    public static DataSource getDataSource() {
+        return dataSource;
+    }
+
+    // Метрики пула соединений
+    public static PoolMetricsTracker getPoolMetrics() {
+        return metricsFactory.getTracker();
+    }
+
+    // Закрытие пула при остановке приложения
+    public static void close() {
+        if (!dataSource.isClosed()) {
+            logger.info("Закрытие пула соединений. Метрики: " + getPoolMetrics());
+            dataSource.close();
+        }
     }
 }
@@ -0,0 +1,116 @@
+package org.example.config;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сборщик метрик пула соединений.
+ * Накапливает:
+ * - время ожидания соединения из пула (количество, сумма, максимум)
+ * - время удержания соединения вызывающим кодом
+ * - количество таймаутов получения соединения
+ */
+public class PoolMetricsTracker implements IMetricsTracker {
+    // Время ожидания соединения
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanosTotal = new LongAdder();
+    private final AtomicLong acquireNanosMax = new AtomicLong();
+
+    // Время использования соединения
+    private final LongAdder usageMillisTotal = new LongAdder();
+    private final AtomicLong usageMillisMax = new AtomicLong();
+
+    // Ошибки получения соединения
+    private final LongAdder timeouts = new LongAdder();
+
+    // Текущее состояние пула (заполняется HikariCP)
+    private volatile PoolStats poolStats;
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquireCount.increment();
+        acquireNanosTotal.add(elapsedAcquiredNanos);
+        acquireNanosMax.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageMillisTotal.add(elapsedBorrowedMillis);
+        usageMillisMax.accumulateAndGet(elapsedBorrowedMillis, Math::max);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Количество выданных пулом соединений
+     */
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    /**
+     * Среднее время ожидания соединения в микросекундах
+     */
+    public long getAverageAcquireMicros() {
+        long count = acquireCount.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(acquireNanosTotal.sum() / count);
+    }
+
+    /**
+     * Максимальное время ожидания соединения в микросекундах
+     */
+    public long getMaxAcquireMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(acquireNanosMax.get());
+    }
+
+    /**
+     * Максимальное время удержания соединения в миллисекундах
+     */
+    public long getMaxUsageMillis() {
+        return usageMillisMax.get();
+    }
+
+    /**
+     * Количество таймаутов при получении соединения
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public String toString() {
+        PoolStats stats = poolStats;
+        String state = stats == null ? "" : String.format(
+                "active=%d, idle=%d, waiting=%d, ",
+                stats.getActiveConnections(), stats.getIdleConnections(), stats.getPendingThreads());
+        return String.format("%sacquired=%d, avgWait=%dмкс, maxWait=%dмкс, maxUsage=%dмс, timeouts=%d",
+                state, getAcquireCount(), getAverageAcquireMicros(), getMaxAcquireMicros(),
+                getMaxUsageMillis(), getTimeouts());
+    }
+
+    /**
+     * Фабрика для регистрации трекера в HikariConfig.
+     * Хранит единственный экземпляр трекера, чтобы метрики были доступны из DatabaseConfig.
+     */
+    static class Factory implements MetricsTrackerFactory {
+        private final PoolMetricsTracker tracker = new PoolMetricsTracker();
+
+        @Override
+        public IMetricsTracker create(String poolName, PoolStats poolStats) {
+            tracker.poolStats = poolStats;
+            return tracker;
+        }
+
+        PoolMetricsTracker getTracker() {
+            return tracker;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.config;
+
+import org.example.server.ApiServer;
+import org.example.server.JdkApiServer;
+import org.example.server.NioApiServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+Конфигурация HTTP-сервера
+- Загружает порт, реализацию сервера и режим пула обработчиков запросов из server.properties
+- Реализации сервера (server.mode):
+  jdk - встроенный com.sun.net.httpserver.HttpServer
+  nio - неблокирующий сервер на Selector (NioApiServer)
+- Режимы пула:
+  fixed   - фиксированное число потоков (server.executor.threads)
+  elastic - пул от core до max потоков с ограниченной очередью; при переполнении очереди
+            запрос отклоняется ответом 503, поток диспетчера сервера обработчики не выполняет
+  virtual - виртуальный поток на запрос (JDK 21+); на более старых JDK используется fixed
+*/
+public class ServerConfig {
+    private static final Logger logger = Logger.getLogger(ServerConfig.class.getName());
+
+    // Файл с параметрами сервера
+    private static final String CONFIG_FILE = "server.properties";
+
+    private final Properties props;
+
+    public ServerConfig() {
+        this.props = loadConfig();
+    }
+
+    private static Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = ServerConfig.class.getClassLoader().getResourceAsStream(CONFIG_FILE)) {
+            if (is != null) {
+                props.load(is);
+            } else {
+                logger.warning(CONFIG_FILE + " не найден, используются параметры по умолчанию");
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации сервера", e);
+        }
+        return props;
+    }
+
+    // Порт HTTP-сервера
+    public int getPort() {
+        return intProperty("server.port", 8080);
+    }
+
+    // Размер очереди входящих соединений (0 - значение по умолчанию системы)
+    public int getBacklog() {
+        return intProperty("server.backlog", 0);
+    }
+
+    /**
+     * Создает HTTP-сервер согласно server.mode
+     * @param executor пул обработчиков запросов
+     */
+    public ApiServer createServer(ExecutorService executor) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(getPort());
+        String mode = props.getProperty("server.mode", "jdk").trim().toLowerCase();
+        if ("nio".equals(mode)) {
+            return new NioApiServer(address, getBacklog(), executor,
+                    intProperty("server.nio.io_threads", 2),
+                    intProperty("server.nio.buffer_bytes", 16_384),
+                    intProperty("server.nio.max_pooled_buffers", 256),
+                    intProperty("server.nio.max_header_bytes", 8_192),
+                    intProperty("server.nio.max_body_bytes", 65_536),
+                    intProperty("server.nio.idle_timeout_ms", 60_000));
+        }
+        if (!"jdk".equals(mode)) {
+            logger.warning("Неизвестная реализация сервера " + mode + ", используется jdk");
+        }
+        logger.info("HTTP-сервер: com.sun.net.httpserver");
+        return new JdkApiServer(address, getBacklog(), executor);
+    }
+
+    /**
+     * Создает пул обработчиков запросов согласно server.executor.mode
+     */
+    public ExecutorService createExecutor() {
+        String mode = props.getProperty("server.executor.mode", "fixed").trim().toLowerCase();
+        switch (mode) {
+            case "virtual":
+                ExecutorService virtual = createVirtualThreadExecutor();
+                if (virtual != null) {
+                    logger.info("Обработка запросов: виртуальный поток на запрос");
+                    return virtual;
+                }
+                logger.warning("Виртуальные потоки недоступны в этой версии JDK, используется режим fixed");
+                return createFixedExecutor();
+            case "elastic":
+                return createElasticExecutor();
+            case "fixed":
+                return createFixedExecutor();
+            default:
+                logger.warning("Неизвестный режим пула " + mode + ", используется режим fixed");
+                return createFixedExecutor();
+        }
+    }
+
+    private ExecutorService createFixedExecutor() {
+        int threads = intProperty("server.executor.threads", 10);
+        logger.info("Обработка запросов: фиксированный пул из " + threads + " потоков");
+        return Executors.newFixedThreadPool(threads, namedThreadFactory());
+    }
+
+    private ExecutorService createElasticExecutor() {
+        int core = intProperty("server.executor.core_threads", 10);
+        int max = intProperty("server.executor.max_threads", 100);
+        int queue = intProperty("server.executor.queue_size", 1000);
+        long keepAliveMs = intProperty("server.executor.keep_alive_ms", 60_000);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(core, max, keepAliveMs, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), namedThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        logger.info("Обработка запросов: эластичный пул " + core + ".." + max + " потоков, очередь " + queue);
+        return executor;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() вызывается через reflection,
+     * так как проект собирается под Java 11
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> new Thread(r, "http-worker-" + counter.incrementAndGet());
+    }
+
+    private int intProperty(String key, int defaultValue) {
+        return Integer.parseInt(props.getProperty(key, String.valueOf(defaultValue)).trim());
+    }
+}
@@ -1,17 +1,21 @@
 package org.example.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.example.archive.OtpArchive;
+import org.example.controller.request.DeleteUserRequest;
+import org.example.controller.request.OtpConfigUpdateRequest;
+import org.example.model.Otp;
 import org.example.model.OtpConfig;
 import org.example.model.User;
 import org.example.service.OtpService;
 import org.example.service.UserService;
-import org.example.util.JwtUtil;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,70 +28,57 @@ import java.util.logging.Logger;
  * Обрабатывает запросы:
  * - Управление пользователями (просмотр/удаление)
  * - Конфигурация параметров OTP
+ * - Чтение архива OTP-кодов
  */
 public class AdminController implements HttpHandler {
     private static final Logger logger = Logger.getLogger(AdminController.class.getName());
+    private static final ObjectReader DELETE_USER_READER = RequestReader.readerFor(DeleteUserRequest.class);
+    private static final ObjectReader CONFIG_UPDATE_READER = RequestReader.readerFor(OtpConfigUpdateRequest.class);
+    // Ограничение числа записей архива в одном ответе
+    private static final int ARCHIVE_DEFAULT_LIMIT = 1000;
+    private static final int ARCHIVE_MAX_LIMIT = 10000;
     private final UserService userService;
     private final OtpService otpService;
-    private final JwtUtil jwtUtil;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OtpArchive otpArchive;
+    private final Router router;
 
-    public AdminController(UserService userService, OtpService otpService, JwtUtil jwtUtil) {
+    public AdminController(UserService userService, OtpService otpService, OtpArchive otpArchive) {
         this.userService = userService;
         this.otpService = otpService;
-        this.jwtUtil = jwtUtil;
+        this.otpArchive = otpArchive;
+        this.router = new Router()
+                .add("GET", "/api/admin/users", this::handleGetUsers)
+                .add("DELETE", "/api/admin/users", this::handleDeleteUser)
+                .add("GET", "/api/admin/otp/config", this::handleGetOtpConfig)
+                .add("PUT", "/api/admin/otp/config", this::handleUpdateOtpConfig)
+                .add("GET", "/api/admin/otp/archive", this::handleGetArchive);
     }
 
     /**
      * Основной метод обработки входящих HTTP-запросов
-     * Выполняет:
-     * 1. Проверку JWT-токена и прав доступа
-     * 2. Маршрутизацию запросов по endpoint-ам
+     * Выполняет маршрутизацию запросов по endpoint-ам.
+     * JWT-токен и роль ADMIN проверяются заранее фильтром JwtAuthFilter.
      */
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         String path = exchange.getRequestURI().getPath();
         String method = exchange.getRequestMethod();
 
-        logger.info("Получен запрос: " + method + " " + path);
-
-        // Проверка наличия и валидности Bearer-токена
-        String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            sendResponse(exchange, 401, "Требуется аутентификация");
-            return;
-        }
-
-        // Верификация JWT-токена
-        String token = authHeader.substring(7);
-        if (!jwtUtil.validateToken(token)) {
-            sendResponse(exchange, 401, "Недействительный токен");
-            return;
-        }
-
-        // Проверка роли пользователя
-        String userRole = jwtUtil.getRole(token);
-        if (!"ADMIN".equals(userRole)) {
-            sendResponse(exchange, 403, "Доступ запрещен. Требуется роль администратора");
-            return;
-        }
+        logger.fine(() -> "Получен запрос: " + method + " " + path);
 
+        Router.Route route = router.find(method, path);
         try {
             // Маршрутизация запросов
-            if (path.equals("/api/admin/users") && method.equals("GET")) {
-                handleGetUsers(exchange);
-            } else if (path.equals("/api/admin/users") && method.equals("DELETE")) {
-                handleDeleteUser(exchange);
-            } else if (path.equals("/api/admin/otp/config") && method.equals("GET")) {
-                handleGetOtpConfig(exchange);
-            } else if (path.equals("/api/admin/otp/config") && method.equals("PUT")) {
-                handleUpdateOtpConfig(exchange);
+            if (route != null) {
+                route.handle(exchange);
             } else {
-                sendResponse(exchange, 404, "Метод не найден");
+                ResponseWriter.sendMessage(exchange, 404, "Метод не найден");
             }
+        } catch (InvalidRequestException e) {
+            ResponseWriter.sendMessage(exchange, 400, e.getMessage());
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Ошибка при обработке запроса", e);
-            sendResponse(exchange, 500, "Внутренняя ошибка сервера");
+            ResponseWriter.sendMessage(exchange, 500, "Внутренняя ошибка сервера");
         }
     }
 
@@ -101,7 +92,7 @@ public class AdminController implements HttpHandler {
 
         Map<String, Object> response = new HashMap<>();
         response.put("users", users);
-        sendResponse(exchange, 200, objectMapper.writeValueAsString(response));
+        ResponseWriter.sendJson(exchange, 200, response);
     }
 
     /**
@@ -110,11 +101,10 @@ public class AdminController implements HttpHandler {
      * Перед удалением пользователя удаляет все связанные OTP-коды
      */
     private void handleDeleteUser(HttpExchange exchange) throws IOException {
-        Map<String, Object> requestMap = readRequestBody(exchange);
-        Long userId = Long.valueOf(String.valueOf(requestMap.get("userId")));
+        Long userId = RequestReader.<DeleteUserRequest>read(exchange, DELETE_USER_READER).getUserId();
 
         if (userId == null) {
-            sendResponse(exchange, 400, "ID пользователя обязателен");
+            ResponseWriter.sendMessage(exchange, 400, "ID пользователя обязателен");
             return;
         }
 
@@ -127,9 +117,9 @@ public class AdminController implements HttpHandler {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Пользователь успешно удален");
-            sendResponse(exchange, 200, objectMapper.writeValueAsString(response));
+            ResponseWriter.sendJson(exchange, 200, response);
         } else {
-            sendResponse(exchange, 404, "Пользователь не найден");
+            ResponseWriter.sendMessage(exchange, 404, "Пользователь не найден");
         }
     }
 
@@ -146,9 +136,9 @@ public class AdminController implements HttpHandler {
             Map<String, Object> response = new HashMap<>();
             response.put("codeLength", config.getCodeLength());
             response.put("lifetimeInMinutes", config.getLifetimeInMinutes());
-            sendResponse(exchange, 200, objectMapper.writeValueAsString(response));
+            ResponseWriter.sendJson(exchange, 200, response);
         } else {
-            sendResponse(exchange, 404, "Конфигурация OTP не найдена");
+            ResponseWriter.sendMessage(exchange, 404, "Конфигурация OTP не найдена");
         }
     }
 
@@ -159,12 +149,12 @@ public class AdminController implements HttpHandler {
      * - lifetimeInMinutes: новое время жизни (1-15 минут)
      */
     private void handleUpdateOtpConfig(HttpExchange exchange) throws IOException {
-        Map<String, Object> requestMap = readRequestBody(exchange);
-        Integer codeLength = (Integer) requestMap.get("codeLength");
-        Integer lifetimeInMinutes = (Integer) requestMap.get("lifetimeInMinutes");
+        OtpConfigUpdateRequest request = RequestReader.read(exchange, CONFIG_UPDATE_READER);
+        Integer codeLength = request.getCodeLength();
+        Integer lifetimeInMinutes = request.getLifetimeInMinutes();
 
         if (codeLength == null || lifetimeInMinutes == null) {
-            sendResponse(exchange, 400, "Длина кода и время жизни обязательны");
+            ResponseWriter.sendMessage(exchange, 400, "Длина кода и время жизни обязательны");
             return;
         }
 
@@ -173,31 +163,67 @@ public class AdminController implements HttpHandler {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Конфигурация OTP успешно обновлена");
-            sendResponse(exchange, 200, objectMapper.writeValueAsString(response));
+            ResponseWriter.sendJson(exchange, 200, response);
         } else {
-            sendResponse(exchange, 500, "Не удалось обновить конфигурацию OTP");
+            ResponseWriter.sendMessage(exchange, 500, "Не удалось обновить конфигурацию OTP");
         }
     }
 
-    // Вспомогательные методы
-
     /**
-     * Чтение тела запроса и преобразование в Map
+     * Обработка GET-запроса для чтения архива OTP-кодов
+     * Параметры строки запроса (нужен хотя бы userId или диапазон):
+     * - userId: идентификатор пользователя
+     * - from/to: диапазон времени создания [from, to) в формате ISO (2024-01-31T00:00:00)
+     * - limit: максимальное число записей (по умолчанию 1000, не больше 10000)
      */
-    private Map<String, Object> readRequestBody(HttpExchange exchange) throws IOException {
-        try (InputStream is = exchange.getRequestBody()) {
-            return objectMapper.readValue(is, Map.class);
+    private void handleGetArchive(HttpExchange exchange) throws IOException {
+        Map<String, String> params = RequestReader.queryParams(exchange);
+        Long userId;
+        LocalDateTime from;
+        LocalDateTime to;
+        int limit;
+        try {
+            userId = params.containsKey("userId") ? Long.valueOf(params.get("userId")) : null;
+            from = params.containsKey("from") ? LocalDateTime.parse(params.get("from")) : null;
+            to = params.containsKey("to") ? LocalDateTime.parse(params.get("to")) : null;
+            limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : ARCHIVE_DEFAULT_LIMIT;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            ResponseWriter.sendMessage(exchange, 400, "Некорректные параметры запроса");
+            return;
         }
+        if (userId == null && from == null && to == null) {
+            ResponseWriter.sendMessage(exchange, 400, "Укажите userId или диапазон from/to");
+            return;
+        }
+        if (limit <= 0 || limit > ARCHIVE_MAX_LIMIT) {
+            ResponseWriter.sendMessage(exchange, 400, "limit должен быть от 1 до " + ARCHIVE_MAX_LIMIT);
+            return;
+        }
+
+        // Время передается строками ISO, как и в ответах генерации OTP
+        List<Map<String, Object>> otps = new ArrayList<>();
+        int max = limit;
+        otpArchive.scan(userId, from, to, otp -> {
+            otps.add(toArchiveEntry(otp));
+            return otps.size() < max;
+        });
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("otps", otps);
+        response.put("truncated", otps.size() == limit);
+        ResponseWriter.sendJson(exchange, 200, response);
     }
 
-    /**
-     * Отправка HTTP-ответа с заданным статусом и телом
-     */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(statusCode, response.getBytes().length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes());
-        }
+    // Вспомогательные методы
+
+    private static Map<String, Object> toArchiveEntry(Otp otp) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("id", otp.getId());
+        entry.put("userId", otp.getUserId());
+        entry.put("operationId", otp.getOperationId());
+        entry.put("status", otp.getStatus());
+        entry.put("createdAt", otp.getCreatedAt().toString());
+        entry.put("expiresAt", otp.getExpiresAt().toString());
+        return entry;
     }
 }
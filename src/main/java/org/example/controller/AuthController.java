@@ -1,14 +1,14 @@
 package org.example.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.example.controller.request.LoginRequest;
+import org.example.controller.request.RegisterRequest;
 import org.example.model.User;
 import org.example.service.AuthService;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -20,14 +20,19 @@ import java.util.logging.Logger;
  */
 public class AuthController implements HttpHandler {
     private static final Logger logger = Logger.getLogger(AuthController.class.getName());
+    private static final ObjectReader REGISTER_READER = RequestReader.readerFor(RegisterRequest.class);
+    private static final ObjectReader LOGIN_READER = RequestReader.readerFor(LoginRequest.class);
     private final AuthService authService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Router router;
 
     /**
      * Конструктор с внедрением сервиса аутентификации.
      */
     public AuthController(AuthService authService) {
         this.authService = authService;
+        this.router = new Router()
+                .add("POST", "/api/auth/register", this::handleRegister)
+                .add("POST", "/api/auth/login", this::handleLogin);
     }
 
     /**
@@ -39,22 +44,21 @@ public class AuthController implements HttpHandler {
         String path = exchange.getRequestURI().getPath();
         String method = exchange.getRequestMethod();
 
-        logger.info("Получен запрос: " + method + " " + path);
+        logger.fine(() -> "Получен запрос: " + method + " " + path);
 
+        Router.Route route = router.find(method, path);
         try {
-            // Обработка регистрации пользователя
-            if (path.equals("/api/auth/register") && method.equals("POST")) {
-                handleRegister(exchange);
-                // Обработка входа пользователя
-            } else if (path.equals("/api/auth/login") && method.equals("POST")) {
-                handleLogin(exchange);
+            if (route != null) {
+                route.handle(exchange);
             } else {
                 // Если endpoint не найден
-                sendResponse(exchange, 404, "Метод не найден");
+                ResponseWriter.sendMessage(exchange, 404, "Метод не найден");
             }
+        } catch (InvalidRequestException e) {
+            ResponseWriter.sendMessage(exchange, 400, e.getMessage());
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Ошибка при обработке запроса", e);
-            sendResponse(exchange, 500, "Внутренняя ошибка сервера");
+            ResponseWriter.sendMessage(exchange, 500, "Внутренняя ошибка сервера");
         }
     }
 
@@ -63,23 +67,20 @@ public class AuthController implements HttpHandler {
      * Ожидает в теле запроса: username, password, email, phone, telegramChatId, isAdmin.
      */
     private void handleRegister(HttpExchange exchange) throws IOException {
-        Map<String, Object> requestMap = readRequestBody(exchange);
+        RegisterRequest request = RequestReader.read(exchange, REGISTER_READER);
 
-        String username = (String) requestMap.get("username");
-        String password = (String) requestMap.get("password");
-        String email = (String) requestMap.get("email");
-        String phone = (String) requestMap.get("phone");
-        String telegramChatId = (String) requestMap.get("telegramChatId");
-        boolean isAdmin = Boolean.valueOf(String.valueOf(requestMap.getOrDefault("isAdmin", "false")));
+        String username = request.getUsername();
+        String password = request.getPassword();
 
         // Проверка обязательных полей
         if (username == null || password == null) {
-            sendResponse(exchange, 400, "Имя пользователя и пароль обязательны");
+            ResponseWriter.sendMessage(exchange, 400, "Имя пользователя и пароль обязательны");
             return;
         }
 
         // Регистрация пользователя через сервис
-        User user = authService.register(username, password, email, phone, telegramChatId, isAdmin);
+        User user = authService.register(username, password, request.getEmail(), request.getPhone(),
+                request.getTelegramChatId(), request.isAdmin());
         if (user != null) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -87,9 +88,9 @@ public class AuthController implements HttpHandler {
             response.put("username", user.getUsername());
             response.put("role", user.getRole());
 
-            sendResponse(exchange, 201, objectMapper.writeValueAsString(response));
+            ResponseWriter.sendJson(exchange, 201, response);
         } else {
-            sendResponse(exchange, 400, "Не удалось зарегистрировать пользователя");
+            ResponseWriter.sendMessage(exchange, 400, "Не удалось зарегистрировать пользователя");
         }
     }
 
@@ -99,14 +100,14 @@ public class AuthController implements HttpHandler {
      * Возвращает JWT-токен при успешной аутентификации.
      */
     private void handleLogin(HttpExchange exchange) throws IOException {
-        Map<String, Object> requestMap = readRequestBody(exchange);
+        LoginRequest request = RequestReader.read(exchange, LOGIN_READER);
 
-        String username = (String) requestMap.get("username");
-        String password = (String) requestMap.get("password");
+        String username = request.getUsername();
+        String password = request.getPassword();
 
         // Проверка обязательных полей
         if (username == null || password == null) {
-            sendResponse(exchange, 400, "Имя пользователя и пароль обязательны");
+            ResponseWriter.sendMessage(exchange, 400, "Имя пользователя и пароль обязательны");
             return;
         }
 
@@ -117,29 +118,11 @@ public class AuthController implements HttpHandler {
             response.put("success", true);
             response.put("token", token);
 
-            sendResponse(exchange, 200, objectMapper.writeValueAsString(response));
+            ResponseWriter.sendJson(exchange, 200, response);
         } else {
-            sendResponse(exchange, 401, "Неверное имя пользователя или пароль");
+            ResponseWriter.sendMessage(exchange, 401, "Неверное имя пользователя или пароль");
         }
     }
 
-    /**
-     * Вспомогательный метод для чтения тела запроса и преобразования его в Map.
-     */
-    private Map<String, Object> readRequestBody(HttpExchange exchange) throws IOException {
-        try (InputStream is = exchange.getRequestBody()) {
-            return objectMapper.readValue(is, Map.class);
-        }
-    }
 
-    /**
-     * Вспомогательный метод для отправки HTTP-ответа с указанным статусом и телом.
-     */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(statusCode, response.getBytes().length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes());
-        }
-    }
 }
@@ -0,0 +1,14 @@
+package org.example.controller;
+
+import java.io.IOException;
+
+/**
+ * Некорректное тело запроса (ответ 400)
+ */
+public class InvalidRequestException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
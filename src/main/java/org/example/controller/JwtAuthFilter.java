@@ -0,0 +1,73 @@
+package org.example.controller;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import org.example.model.AuthPrincipal;
+import org.example.util.JwtUtil;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Фильтр аутентификации для защищенных контекстов HTTP-сервера.
+ * Проверяет Bearer-токен один раз на запрос и сохраняет данные пользователя
+ * в атрибуте запроса, откуда их берут контроллеры.
+ * Если задана требуемая роль, запросы с другой ролью отклоняются с кодом 403.
+ */
+public class JwtAuthFilter extends Filter {
+    // Имя атрибута запроса с данными аутентифицированного пользователя
+    private static final String PRINCIPAL_ATTRIBUTE = "auth.principal";
+
+    private final JwtUtil jwtUtil;
+    private final String requiredRole;
+
+    /**
+     * @param jwtUtil утилита проверки токенов
+     * @param requiredRole роль, необходимая для доступа (null - любая роль)
+     */
+    public JwtAuthFilter(JwtUtil jwtUtil, String requiredRole) {
+        this.jwtUtil = jwtUtil;
+        this.requiredRole = requiredRole;
+    }
+
+    /**
+     * Возвращает данные пользователя, проверенные фильтром для текущего запроса
+     * @param exchange текущий запрос
+     * @return данные пользователя или null, если запрос не проходил через фильтр
+     */
+    public static AuthPrincipal getPrincipal(HttpExchange exchange) {
+        return (AuthPrincipal) exchange.getAttribute(PRINCIPAL_ATTRIBUTE);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        // Проверка наличия Bearer-токена
+        String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            ResponseWriter.sendMessage(exchange, 401, "Требуется аутентификация");
+            return;
+        }
+
+        // Верификация JWT-токена
+        Optional<AuthPrincipal> principal = jwtUtil.verify(authHeader.substring(7));
+        if (!principal.isPresent()) {
+            ResponseWriter.sendMessage(exchange, 401, "Недействительный токен");
+            return;
+        }
+
+        // Проверка роли пользователя
+        if (requiredRole != null && !requiredRole.equals(principal.get().getRole())) {
+            ResponseWriter.sendMessage(exchange, 403, "Доступ запрещен. Требуется роль администратора");
+            return;
+        }
+
+        exchange.setAttribute(PRINCIPAL_ATTRIBUTE, principal.get());
+        chain.doFilter(exchange);
+    }
+
+    @Override
+    public String description() {
+        return "Проверка JWT-токена" + (requiredRole != null ? " и роли " + requiredRole : "");
+    }
+
+}
@@ -1,18 +1,25 @@
 package org.example.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.example.controller.request.GenerateOtpBatchRequest;
+import org.example.controller.request.GenerateOtpRequest;
+import org.example.controller.request.VerifyOtpBatchRequest;
+import org.example.controller.request.VerifyOtpRequest;
 import org.example.model.Otp;
+import org.example.model.OtpGenerationItem;
+import org.example.model.OtpVerificationItem;
+import org.example.model.OtpVerificationResult;
 import org.example.model.User;
 import org.example.service.AuthService;
 import org.example.service.OtpService;
-import org.example.util.JwtUtil;
+import org.example.service.RateLimitExceededException;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
@@ -20,60 +27,55 @@ import java.util.logging.Logger;
 
 /**
  * Контроллер для работы с OTP-кодами (генерация и верификация).
- * Все методы требуют авторизацию пользователя через JWT.
+ * Все методы требуют авторизацию пользователя через JWT (проверяется JwtAuthFilter).
  */
 public class OtpController implements HttpHandler {
     private static final Logger logger = Logger.getLogger(OtpController.class.getName());
+    private static final ObjectReader GENERATE_READER = RequestReader.readerFor(GenerateOtpRequest.class);
+    private static final ObjectReader GENERATE_BATCH_READER = RequestReader.readerFor(GenerateOtpBatchRequest.class);
+    private static final ObjectReader VERIFY_READER = RequestReader.readerFor(VerifyOtpRequest.class);
+    private static final ObjectReader VERIFY_BATCH_READER = RequestReader.readerFor(VerifyOtpBatchRequest.class);
     private final OtpService otpService;
-    private final JwtUtil jwtUtil;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AuthService authService;
+    private final Router router;
 
     // Конструктор с внедрением зависимостей
-    public OtpController(OtpService otpService, JwtUtil jwtUtil) {
+    public OtpController(OtpService otpService, AuthService authService) {
         this.otpService = otpService;
-        this.jwtUtil = jwtUtil;
+        this.authService = authService;
+        this.router = new Router()
+                .add("POST", "/api/otp/generate", this::handleGenerateOtp)
+                .add("POST", "/api/otp/generate/batch", this::handleGenerateOtpBatch)
+                .add("POST", "/api/otp/verify", this::handleVerifyOtp)
+                .add("POST", "/api/otp/verify/batch", this::handleVerifyOtpBatch);
     }
 
     /**
      * Главный обработчик HTTP-запросов.
-     * Проверяет авторизацию и маршрутизирует запросы по endpoint-ам.
+     * Маршрутизирует запросы по endpoint-ам.
      */
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         String path = exchange.getRequestURI().getPath();
         String method = exchange.getRequestMethod();
 
-        logger.info("Получен запрос: " + method + " " + path);
-
-        // Проверка наличия и валидности JWT-токена
-        String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            sendResponse(exchange, 401, "Требуется аутентификация");
-            return;
-        }
-
-        String token = authHeader.substring(7);
-        if (!jwtUtil.validateToken(token)) {
-            sendResponse(exchange, 401, "Недействительный токен");
-            return;
-        }
-
-        // Получаем имя пользователя из токена
-        String username = jwtUtil.getUsername(token);
+        logger.fine(() -> "Получен запрос: " + method + " " + path);
 
+        Router.Route route = router.find(method, path);
         try {
-            // Генерация OTP-кода
-            if (path.equals("/api/otp/generate") && method.equals("POST")) {
-                handleGenerateOtp(exchange, username);
-                // Проверка OTP-кода
-            } else if (path.equals("/api/otp/verify") && method.equals("POST")) {
-                handleVerifyOtp(exchange);
+            if (route != null) {
+                route.handle(exchange);
             } else {
-                sendResponse(exchange, 404, "Метод не найден");
+                ResponseWriter.sendMessage(exchange, 404, "Метод не найден");
             }
+        } catch (InvalidRequestException e) {
+            ResponseWriter.sendMessage(exchange, 400, e.getMessage());
+        } catch (RateLimitExceededException e) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            ResponseWriter.sendMessage(exchange, 429, e.getMessage());
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Ошибка при обработке запроса", e);
-            sendResponse(exchange, 500, "Внутренняя ошибка сервера");
+            ResponseWriter.sendMessage(exchange, 500, "Внутренняя ошибка сервера");
         }
     }
 
@@ -81,21 +83,23 @@ public class OtpController implements HttpHandler {
      * Генерация нового OTP-кода для пользователя.
      * Ожидает operationId и notificationType в теле запроса.
      */
-    private void handleGenerateOtp(HttpExchange exchange, String username) throws IOException {
-        Map<String, Object> requestMap = readRequestBody(exchange);
+    private void handleGenerateOtp(HttpExchange exchange) throws IOException {
+        // Имя пользователя из токена, проверенного JwtAuthFilter
+        String username = JwtAuthFilter.getPrincipal(exchange).getUsername();
+        GenerateOtpRequest request = RequestReader.read(exchange, GENERATE_READER);
 
-        String operationId = (String) requestMap.get("operationId");
-        String notificationType = (String) requestMap.get("notificationType");
+        String operationId = request.getOperationId();
+        String notificationType = request.getNotificationType();
 
         if (operationId == null || notificationType == null) {
-            sendResponse(exchange, 400, "ID операции и тип уведомления обязательны");
+            ResponseWriter.sendMessage(exchange, 400, "ID операции и тип уведомления обязательны");
             return;
         }
 
-        // Получение пользователя по имени (реализуйте через AuthService)
-        Optional<User> userOptional = Optional.empty(); // authService.getUserByUsername(username);
+        // Получение пользователя по имени
+        Optional<User> userOptional = authService.getUserByUsername(username);
         if (!userOptional.isPresent()) {
-            sendResponse(exchange, 404, "Пользователь не найден");
+            ResponseWriter.sendMessage(exchange, 404, "Пользователь не найден");
             return;
         }
 
@@ -115,57 +119,174 @@ public class OtpController implements HttpHandler {
                 response.put("code", otp.getCode());
             }
 
-            sendResponse(exchange, 200, objectMapper.writeValueAsString(response));
+            ResponseWriter.sendJson(exchange, 200, response);
         } else {
-            sendResponse(exchange, 500, "Не удалось сгенерировать OTP");
+            ResponseWriter.sendMessage(exchange, 500, "Не удалось сгенерировать OTP");
         }
     }
 
+    /**
+     * Пакетная генерация OTP-кодов для пользователя.
+     * Ожидает items - список объектов с operationId и notificationType.
+     * Возвращает результат для каждого элемента в порядке запроса;
+     * элементы сверх лимита частоты генерации содержат retryAfter (секунды).
+     */
+    private void handleGenerateOtpBatch(HttpExchange exchange) throws IOException {
+        String username = JwtAuthFilter.getPrincipal(exchange).getUsername();
+        GenerateOtpBatchRequest request = RequestReader.read(exchange, GENERATE_BATCH_READER,
+                RequestReader.MAX_BATCH_BODY_BYTES);
+
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            ResponseWriter.sendMessage(exchange, 400, "Список items обязателен");
+            return;
+        }
+        List<OtpGenerationItem> items = new ArrayList<>(request.getItems().size());
+        for (GenerateOtpRequest item : request.getItems()) {
+            if (item == null || item.getOperationId() == null || item.getNotificationType() == null) {
+                ResponseWriter.sendMessage(exchange, 400, "ID операции и тип уведомления обязательны");
+                return;
+            }
+            items.add(new OtpGenerationItem(item.getOperationId(), item.getNotificationType()));
+        }
+
+        Optional<User> userOptional = authService.getUserByUsername(username);
+        if (!userOptional.isPresent()) {
+            ResponseWriter.sendMessage(exchange, 404, "Пользователь не найден");
+            return;
+        }
+
+        if (!otpService.generateOtpBatch(userOptional.get(), items)) {
+            ResponseWriter.sendMessage(exchange, 500, "Не удалось сгенерировать OTP");
+            return;
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(items.size());
+        int generated = 0;
+        long retryAfterSeconds = 0;
+        for (OtpGenerationItem item : items) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("operationId", item.getOperationId());
+            result.put("success", item.isSuccess());
+            if (item.isSuccess()) {
+                generated++;
+                result.put("expiresAt", item.getOtp().getExpiresAt().toString());
+                // Включаем код в ответ только для режима FILE
+                if ("file".equalsIgnoreCase(item.getNotificationType())) {
+                    result.put("code", item.getOtp().getCode());
+                }
+            } else {
+                result.put("message", item.getError());
+                if (item.getRetryAfterSeconds() > 0) {
+                    result.put("retryAfter", item.getRetryAfterSeconds());
+                    retryAfterSeconds = retryAfterSeconds == 0
+                            ? item.getRetryAfterSeconds()
+                            : Math.min(retryAfterSeconds, item.getRetryAfterSeconds());
+                }
+            }
+            results.add(result);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("generated", generated);
+        response.put("failed", items.size() - generated);
+        response.put("items", results);
+        // Ни один код не создан из-за лимита частоты - вся пачка отклонена
+        if (generated == 0 && retryAfterSeconds > 0) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            ResponseWriter.sendJson(exchange, 429, response);
+            return;
+        }
+        ResponseWriter.sendJson(exchange, 200, response);
+    }
+
     /**
      * Проверка OTP-кода по коду и operationId.
      * Ожидает code и operationId в теле запроса.
      */
     private void handleVerifyOtp(HttpExchange exchange) throws IOException {
-        Map<String, Object> requestMap = readRequestBody(exchange);
+        String username = JwtAuthFilter.getPrincipal(exchange).getUsername();
+        VerifyOtpRequest request = RequestReader.read(exchange, VERIFY_READER);
 
-        String code = (String) requestMap.get("code");
-        String operationId = (String) requestMap.get("operationId");
+        String code = request.getCode();
+        String operationId = request.getOperationId();
 
         if (code == null || operationId == null) {
-            sendResponse(exchange, 400, "Код и ID операции обязательны");
+            ResponseWriter.sendMessage(exchange, 400, "Код и ID операции обязательны");
             return;
         }
 
-        // Проверяем OTP-код через сервис
-        boolean verified = otpService.verifyOtp(code, operationId);
-        if (verified) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "OTP успешно проверен");
+        // Проверяем OTP-код через сервис (один атомарный запрос к БД)
+        OtpVerificationResult result = otpService.verifyOtp(code, operationId, username);
+        switch (result) {
+            case USED:
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "OTP успешно проверен");
 
-            sendResponse(exchange, 200, objectMapper.writeValueAsString(response));
-        } else {
-            sendResponse(exchange, 400, "Недействительный или истекший OTP");
+                ResponseWriter.sendJson(exchange, 200, response);
+                break;
+            case EXPIRED:
+                ResponseWriter.sendMessage(exchange, 400, "Срок действия OTP истек");
+                break;
+            case ALREADY_USED:
+                ResponseWriter.sendMessage(exchange, 409, "OTP уже использован");
+                break;
+            case NOT_FOUND:
+                ResponseWriter.sendMessage(exchange, 400, "Недействительный OTP");
+                break;
+            case TOO_MANY_ATTEMPTS:
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(otpService.getAttemptWindowSeconds()));
+                ResponseWriter.sendMessage(exchange, 429, "Превышено число попыток проверки OTP");
+                break;
+            default:
+                ResponseWriter.sendMessage(exchange, 500, "Не удалось проверить OTP");
         }
     }
 
     /**
-     * Вспомогательный метод для чтения тела запроса и преобразования его в Map.
+     * Пакетная проверка OTP-кодов.
+     * Ожидает items - список объектов с code и operationId.
+     * Возвращает статус проверки каждого элемента в порядке запроса
+     * (USED - код действителен и использован, EXPIRED, ALREADY_USED, NOT_FOUND,
+     * TOO_MANY_ATTEMPTS - лимит попыток исчерпан, ERROR).
      */
-    private Map<String, Object> readRequestBody(HttpExchange exchange) throws IOException {
-        try (InputStream is = exchange.getRequestBody()) {
-            return objectMapper.readValue(is, Map.class);
+    private void handleVerifyOtpBatch(HttpExchange exchange) throws IOException {
+        String username = JwtAuthFilter.getPrincipal(exchange).getUsername();
+        VerifyOtpBatchRequest request = RequestReader.read(exchange, VERIFY_BATCH_READER,
+                RequestReader.MAX_BATCH_BODY_BYTES);
+
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            ResponseWriter.sendMessage(exchange, 400, "Список items обязателен");
+            return;
+        }
+        List<OtpVerificationItem> items = new ArrayList<>(request.getItems().size());
+        for (VerifyOtpRequest item : request.getItems()) {
+            if (item == null || item.getCode() == null || item.getOperationId() == null) {
+                ResponseWriter.sendMessage(exchange, 400, "Код и ID операции обязательны");
+                return;
+            }
+            items.add(new OtpVerificationItem(item.getCode(), item.getOperationId()));
         }
-    }
 
-    /**
-     * Вспомогательный метод для отправки HTTP-ответа с указанным статусом и телом.
-     */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(statusCode, response.getBytes().length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes());
+        otpService.verifyOtpBatch(items, username);
+
+        List<Map<String, Object>> results = new ArrayList<>(items.size());
+        int verified = 0;
+        for (OtpVerificationItem item : items) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("operationId", item.getOperationId());
+            result.put("success", item.getResult().isSuccess());
+            result.put("status", item.getResult().name());
+            if (item.getResult().isSuccess()) {
+                verified++;
+            }
+            results.add(result);
         }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("verified", verified);
+        response.put("failed", items.size() - verified);
+        response.put("items", results);
+        ResponseWriter.sendJson(exchange, 200, response);
     }
 }
@@ -0,0 +1,173 @@
+package org.example.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Чтение тел запросов в типизированные объекты.
+ * - ObjectReader для каждого типа запроса создается один раз и используется всеми потоками
+ * - аксессоры генерируются модулем Blackbird (LambdaMetafactory) вместо reflection
+ * - неизвестные поля, null для примитивов и тело больше MAX_BODY_BYTES
+ *   (MAX_BATCH_BODY_BYTES для пакетных запросов) отклоняются
+ * Любая ошибка чтения приводится к InvalidRequestException (ответ 400).
+ */
+public final class RequestReader {
+    // Максимальный размер тела запроса
+    public static final int MAX_BODY_BYTES = 16 * 1024;
+
+    // Максимальный размер тела пакетного запроса (не больше лимита тела HTTP-сервера)
+    public static final int MAX_BATCH_BODY_BYTES = 64 * 1024;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new BlackbirdModule())
+            .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .enable(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES)
+            .enable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+    private RequestReader() {
+    }
+
+    /**
+     * Создает ObjectReader для типа запроса (вызывается один раз при инициализации контроллера)
+     */
+    public static ObjectReader readerFor(Class<?> type) {
+        return objectMapper.readerFor(type);
+    }
+
+    /**
+     * Читает тело запроса в объект
+     * @param exchange запрос
+     * @param reader ObjectReader, созданный readerFor
+     */
+    public static <T> T read(HttpExchange exchange, ObjectReader reader) throws InvalidRequestException {
+        return read(exchange, reader, MAX_BODY_BYTES);
+    }
+
+    /**
+     * Читает тело запроса в объект с собственным лимитом размера (пакетные запросы)
+     * @param exchange запрос
+     * @param reader ObjectReader, созданный readerFor
+     * @param maxBodyBytes максимальный размер тела
+     */
+    public static <T> T read(HttpExchange exchange, ObjectReader reader, int maxBodyBytes)
+            throws InvalidRequestException {
+        try (InputStream is = new LimitedInputStream(exchange.getRequestBody(), maxBodyBytes)) {
+            T value = reader.readValue(is);
+            if (value == null) {
+                throw new InvalidRequestException("Пустое тело запроса");
+            }
+            return value;
+        } catch (InvalidRequestException e) {
+            throw e;
+        } catch (JsonProcessingException e) {
+            Throwable cause = e.getCause();
+            // Ошибки проверки полей в конструкторах запросов возвращаются клиенту как есть
+            if (cause instanceof IllegalArgumentException) {
+                throw new InvalidRequestException(cause.getMessage());
+            }
+            if (e instanceof UnrecognizedPropertyException) {
+                throw new InvalidRequestException(
+                        "Неизвестное поле " + ((UnrecognizedPropertyException) e).getPropertyName());
+            }
+            throw new InvalidRequestException("Некорректное тело запроса");
+        } catch (IOException e) {
+            throw new InvalidRequestException("Не удалось прочитать тело запроса");
+        }
+    }
+
+    /**
+     * Разбирает параметры строки запроса (для GET-запросов)
+     * @return параметры; для повторяющегося параметра - первое значение
+     */
+    public static Map<String, String> queryParams(HttpExchange exchange) throws InvalidRequestException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        try {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                params.putIfAbsent(name, value);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Некорректная строка запроса");
+        }
+        return params;
+    }
+
+    /**
+     * Проверяет длину строкового поля (вызывается из конструкторов объектов запросов)
+     * @return то же значение
+     */
+    public static String limit(String value, int maxLength, String field) {
+        if (value != null && value.length() > maxLength) {
+            throw new IllegalArgumentException("Поле " + field + " длиннее " + maxLength + " символов");
+        }
+        return value;
+    }
+
+    /**
+     * Проверяет диапазон числового поля (вызывается из конструкторов объектов запросов)
+     * @return то же значение
+     */
+    public static Integer range(Integer value, int min, int max, String field) {
+        if (value != null && (value < min || value > max)) {
+            throw new IllegalArgumentException("Поле " + field + " должно быть от " + min + " до " + max);
+        }
+        return value;
+    }
+
+    /**
+     * Поток, прерывающий чтение при превышении лимита размера тела
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long read;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws InvalidRequestException {
+            read += n;
+            if (read > limit) {
+                throw new InvalidRequestException("Тело запроса больше " + limit + " байт");
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Общая запись HTTP-ответов для контроллеров и фильтров.
+ * - один ObjectMapper на приложение (потокобезопасен после настройки)
+ * - тело сериализуется сразу в переиспользуемый буфер потока, без промежуточной строки
+ * - кодировка всегда UTF-8, Content-Length равен фактической длине тела
+ * - тело записывается в поток ответа одним вызовом write
+ */
+public final class ResponseWriter {
+    private static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+    // Буферы больше этого размера не переиспользуются, чтобы не удерживать память
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ThreadLocal<PooledBuffer> buffers = ThreadLocal.withInitial(PooledBuffer::new);
+
+    private ResponseWriter() {
+    }
+
+    /**
+     * Общий ObjectMapper приложения
+     */
+    public static ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Сериализует объект в JSON и отправляет его с указанным статусом
+     */
+    public static void sendJson(HttpExchange exchange, int statusCode, Object body) throws IOException {
+        PooledBuffer buffer = acquire();
+        try {
+            objectMapper.writeValue(buffer, body);
+            send(exchange, statusCode, buffer.array(), buffer.size());
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Отправляет текстовое сообщение (например, описание ошибки) с указанным статусом
+     */
+    public static void sendMessage(HttpExchange exchange, int statusCode, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        send(exchange, statusCode, body, body.length);
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, byte[] body, int length) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(statusCode, length > 0 ? length : -1);
+        try (OutputStream os = exchange.getResponseBody()) {
+            if (length > 0) {
+                os.write(body, 0, length);
+            }
+        }
+    }
+
+    private static PooledBuffer acquire() {
+        PooledBuffer buffer = buffers.get();
+        // Повторный вход в том же потоке (например, из фильтра) получает отдельный буфер
+        if (buffer.inUse) {
+            return new PooledBuffer();
+        }
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    private static void release(PooledBuffer buffer) {
+        buffer.inUse = false;
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        } else {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Буфер с доступом к внутреннему массиву (без копирования при записи в ответ)
+     */
+    private static final class PooledBuffer extends ByteArrayOutputStream {
+        boolean inUse;
+
+        PooledBuffer() {
+            super(1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
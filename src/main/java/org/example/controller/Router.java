@@ -0,0 +1,42 @@
+package org.example.controller;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Таблица маршрутов контроллера: путь -> HTTP-метод -> обработчик.
+ * Заполняется в конструкторе контроллера и далее только читается,
+ * поиск маршрута - два обращения к HashMap без создания объектов.
+ */
+public final class Router {
+
+    /**
+     * Обработчик маршрута
+     */
+    @FunctionalInterface
+    public interface Route {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private final Map<String, Map<String, Route>> routes = new HashMap<>();
+
+    /**
+     * Регистрирует обработчик для пары (метод, путь)
+     */
+    public Router add(String method, String path, Route route) {
+        routes.computeIfAbsent(path, p -> new HashMap<>()).put(method, route);
+        return this;
+    }
+
+    /**
+     * Находит обработчик запроса
+     * @return обработчик или null, если маршрут не найден
+     */
+    public Route find(String method, String path) {
+        Map<String, Route> byMethod = routes.get(path);
+        return byMethod != null ? byMethod.get(method) : null;
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.controller.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.example.controller.RequestReader;
+
+/**
+ * Тело запроса удаления пользователя (DELETE /api/admin/users)
+ */
+public final class DeleteUserRequest {
+    // Идентификатор пользователя
+    private final Long userId;
+
+    @JsonCreator
+    public DeleteUserRequest(
+            @JsonProperty("userId") Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.controller.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Тело запроса пакетной генерации OTP (POST /api/otp/generate/batch)
+ */
+public final class GenerateOtpBatchRequest {
+    // Максимальное число элементов в одном запросе
+    public static final int MAX_ITEMS = 256;
+
+    // Элементы пакета в формате одиночного запроса генерации
+    private final List<GenerateOtpRequest> items;
+
+    @JsonCreator
+    public GenerateOtpBatchRequest(@JsonProperty("items") List<GenerateOtpRequest> items) {
+        if (items != null && items.size() > MAX_ITEMS) {
+            throw new IllegalArgumentException("Поле items содержит больше " + MAX_ITEMS + " элементов");
+        }
+        this.items = items != null ? Collections.unmodifiableList(items) : null;
+    }
+
+    public List<GenerateOtpRequest> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.controller.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.example.controller.RequestReader;
+import org.example.model.Otp;
+
+/**
+ * Тело запроса генерации OTP (POST /api/otp/generate)
+ */
+public final class GenerateOtpRequest {
+    // Идентификатор операции
+    private final String operationId;
+
+    // Канал отправки (email/sms/telegram/file)
+    private final String notificationType;
+
+    @JsonCreator
+    public GenerateOtpRequest(
+            @JsonProperty("operationId") String operationId,
+            @JsonProperty("notificationType") String notificationType) {
+        this.operationId = RequestReader.limit(operationId, Otp.MAX_OPERATION_ID_LENGTH, "operationId");
+        this.notificationType = RequestReader.limit(notificationType, 16, "notificationType");
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public String getNotificationType() {
+        return notificationType;
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.controller.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.example.controller.RequestReader;
+import org.example.model.User;
+
+/**
+ * Тело запроса входа (POST /api/auth/login)
+ */
+public final class LoginRequest {
+    // Имя пользователя
+    private final String username;
+
+    // Пароль
+    private final String password;
+
+    @JsonCreator
+    public LoginRequest(
+            @JsonProperty("username") String username,
+            @JsonProperty("password") String password) {
+        this.username = RequestReader.limit(username, User.MAX_USERNAME_LENGTH, "username");
+        this.password = RequestReader.limit(password, 128, "password");
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+}
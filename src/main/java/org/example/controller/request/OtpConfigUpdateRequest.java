@@ -0,0 +1,35 @@
+package org.example.controller.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.example.controller.RequestReader;
+import org.example.model.OtpConfig;
+
+/**
+ * Тело запроса обновления конфигурации OTP (PUT /api/admin/otp/config)
+ */
+public final class OtpConfigUpdateRequest {
+    // Длина кода
+    private final Integer codeLength;
+
+    // Время жизни кода в минутах
+    private final Integer lifetimeInMinutes;
+
+    @JsonCreator
+    public OtpConfigUpdateRequest(
+            @JsonProperty("codeLength") Integer codeLength,
+            @JsonProperty("lifetimeInMinutes") Integer lifetimeInMinutes) {
+        this.codeLength = RequestReader.range(codeLength,
+                OtpConfig.MIN_CODE_LENGTH, OtpConfig.MAX_CODE_LENGTH, "codeLength");
+        this.lifetimeInMinutes = RequestReader.range(lifetimeInMinutes,
+                OtpConfig.MIN_LIFETIME_MINUTES, OtpConfig.MAX_LIFETIME_MINUTES, "lifetimeInMinutes");
+    }
+
+    public Integer getCodeLength() {
+        return codeLength;
+    }
+
+    public Integer getLifetimeInMinutes() {
+        return lifetimeInMinutes;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.controller.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.example.controller.RequestReader;
+import org.example.model.User;
+
+/**
+ * Тело запроса регистрации пользователя (POST /api/auth/register)
+ */
+public final class RegisterRequest {
+    // Имя пользователя
+    private final String username;
+
+    // Пароль
+    private final String password;
+
+    // Email (необязательно)
+    private final String email;
+
+    // Телефон (необязательно)
+    private final String phone;
+
+    // Telegram chat ID (необязательно)
+    private final String telegramChatId;
+
+    // Регистрация администратора (по умолчанию false)
+    private final boolean admin;
+
+    @JsonCreator
+    public RegisterRequest(
+            @JsonProperty("username") String username,
+            @JsonProperty("password") String password,
+            @JsonProperty("email") String email,
+            @JsonProperty("phone") String phone,
+            @JsonProperty("telegramChatId") String telegramChatId,
+            @JsonProperty("isAdmin") Boolean admin) {
+        this.username = RequestReader.limit(username, User.MAX_USERNAME_LENGTH, "username");
+        this.password = RequestReader.limit(password, 128, "password");
+        this.email = RequestReader.limit(email, User.MAX_EMAIL_LENGTH, "email");
+        this.phone = RequestReader.limit(phone, User.MAX_PHONE_LENGTH, "phone");
+        this.telegramChatId = RequestReader.limit(telegramChatId, User.MAX_TELEGRAM_CHAT_ID_LENGTH, "telegramChatId");
+        this.admin = Boolean.TRUE.equals(admin);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public String getTelegramChatId() {
+        return telegramChatId;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+}
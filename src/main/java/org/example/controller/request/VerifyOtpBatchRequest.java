@@ -0,0 +1,30 @@
+package org.example.controller.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Тело запроса пакетной проверки OTP (POST /api/otp/verify/batch)
+ */
+public final class VerifyOtpBatchRequest {
+    // Максимальное число элементов в одном запросе
+    public static final int MAX_ITEMS = 500;
+
+    // Элементы пакета в формате одиночного запроса проверки
+    private final List<VerifyOtpRequest> items;
+
+    @JsonCreator
+    public VerifyOtpBatchRequest(@JsonProperty("items") List<VerifyOtpRequest> items) {
+        if (items != null && items.size() > MAX_ITEMS) {
+            throw new IllegalArgumentException("Поле items содержит больше " + MAX_ITEMS + " элементов");
+        }
+        this.items = items != null ? Collections.unmodifiableList(items) : null;
+    }
+
+    public List<VerifyOtpRequest> getItems() {
+        return items;
+    }
+}
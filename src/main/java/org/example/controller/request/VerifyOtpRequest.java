@@ -0,0 +1,33 @@
+package org.example.controller.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.example.controller.RequestReader;
+import org.example.model.Otp;
+
+/**
+ * Тело запроса проверки OTP (POST /api/otp/verify)
+ */
+public final class VerifyOtpRequest {
+    // OTP-код
+    private final String code;
+
+    // Идентификатор операции
+    private final String operationId;
+
+    @JsonCreator
+    public VerifyOtpRequest(
+            @JsonProperty("code") String code,
+            @JsonProperty("operationId") String operationId) {
+        this.code = RequestReader.limit(code, Otp.MAX_CODE_LENGTH, "code");
+        this.operationId = RequestReader.limit(operationId, Otp.MAX_OPERATION_ID_LENGTH, "operationId");
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+}
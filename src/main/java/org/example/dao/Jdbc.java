@@ -0,0 +1,83 @@
+package org.example.dao;
+
+import org.example.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Общие операции чтения для DAO.
+ * - запросы всегда выполняются через PreparedStatement, поэтому pgjdbc кэширует их
+ *   на соединении и после prepareThreshold выполнений использует серверную подготовку
+ *   (соединения пула живут долго, кэш сохраняется между запросами)
+ * - строки преобразуются заранее созданными RowMapper
+ * - многострочные запросы читаются порциями по fetchSize (курсор в транзакции только для чтения)
+ * Ошибки не перехватываются: DAO логирует их и возвращает значение по умолчанию.
+ */
+final class Jdbc {
+
+    private Jdbc() {
+    }
+
+    /**
+     * Установка параметров запроса
+     */
+    @FunctionalInterface
+    interface Binder {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
+
+    // Запрос без параметров
+    static final Binder NO_PARAMS = pstmt -> { };
+
+    /**
+     * Выполняет запрос и возвращает первую строку
+     */
+    static <T> Optional<T> queryOne(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            binder.bind(pstmt);
+            pstmt.setMaxRows(1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? Optional.of(mapper.map(rs)) : Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Выполняет запрос и возвращает все строки, читая их порциями по DatabaseConfig.getFetchSize()
+     */
+    static <T> List<T> queryList(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        int fetchSize = DatabaseConfig.getFetchSize();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // pgjdbc читает порциями только при выключенном autocommit
+            boolean cursor = fetchSize > 0;
+            if (cursor) {
+                conn.setAutoCommit(false);
+                conn.setReadOnly(true);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                binder.bind(pstmt);
+                pstmt.setFetchSize(fetchSize);
+                List<T> result = new ArrayList<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(mapper.map(rs));
+                    }
+                }
+                return result;
+            } finally {
+                if (cursor) {
+                    conn.rollback();
+                    conn.setReadOnly(false);
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+    }
+}
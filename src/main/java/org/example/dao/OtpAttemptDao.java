@@ -0,0 +1,107 @@
+package org.example.dao;
+
+import org.example.config.DatabaseConfig;
+import org.example.model.Otp;
+import org.example.model.OtpAttemptCount;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object (DAO) для общих счетчиков неудачных попыток проверки OTP.
+ * Узлы периодически прибавляют к счетчикам свои приросты и читают изменения других узлов
+ * (см. OtpAttemptLimiter). Время обновления берется по часам БД, чтобы не зависеть от часов узлов.
+ */
+public class OtpAttemptDao {
+    private static final Logger logger = Logger.getLogger(OtpAttemptDao.class.getName());
+
+    // Ширина столбца otp_attempts.attempt_key
+    public static final int MAX_KEY_LENGTH = Otp.MAX_OPERATION_ID_LENGTH;
+
+    private static final RowMapper<OtpAttemptCount> ATTEMPT_MAPPER = rs -> new OtpAttemptCount(
+            rs.getString(1), rs.getString(2), rs.getLong(3), rs.getInt(4));
+
+    /**
+     * Прибавляет приросты неудачных попыток к счетчикам одним запросом
+     * @param deltas приросты по (scope, key, bucket); ключи не длиннее MAX_KEY_LENGTH
+     * @return true если запись успешна
+     */
+    public boolean addFailures(List<OtpAttemptCount> deltas) {
+        String sql = "INSERT INTO otp_attempts (scope, attempt_key, bucket, failures, updated_at) " +
+                "SELECT t.scope, t.attempt_key, t.bucket, t.failures, localtimestamp " +
+                "FROM unnest(?::varchar[], ?::varchar[], ?::bigint[], ?::int[]) " +
+                "AS t(scope, attempt_key, bucket, failures) " +
+                "ON CONFLICT (scope, attempt_key, bucket) DO UPDATE " +
+                "SET failures = otp_attempts.failures + EXCLUDED.failures, updated_at = EXCLUDED.updated_at";
+
+        int size = deltas.size();
+        String[] scopes = new String[size];
+        String[] keys = new String[size];
+        Long[] buckets = new Long[size];
+        Integer[] failures = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            OtpAttemptCount delta = deltas.get(i);
+            scopes[i] = delta.getScope();
+            keys[i] = delta.getKey();
+            buckets[i] = delta.getBucket();
+            failures[i] = delta.getFailures();
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", scopes));
+            pstmt.setArray(2, conn.createArrayOf("varchar", keys));
+            pstmt.setArray(3, conn.createArrayOf("bigint", buckets));
+            pstmt.setArray(4, conn.createArrayOf("int4", failures));
+            pstmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при записи счетчиков попыток проверки OTP", e);
+            return false;
+        }
+    }
+
+    /**
+     * Находит счетчики, измененные за последние lookbackMs миллисекунд (по часам БД)
+     * @param lookbackMs глубина просмотра
+     * @param minBucket наименьший интересующий номер окна
+     * @return итоговые значения счетчиков или null при ошибке
+     */
+    public List<OtpAttemptCount> findUpdatedWithin(long lookbackMs, long minBucket) {
+        String sql = "SELECT scope, attempt_key, bucket, failures FROM otp_attempts " +
+                "WHERE updated_at > localtimestamp - ? * INTERVAL '1 millisecond' AND bucket >= ?";
+
+        try {
+            return Jdbc.queryList(sql, pstmt -> {
+                pstmt.setLong(1, lookbackMs);
+                pstmt.setLong(2, minBucket);
+            }, ATTEMPT_MAPPER);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при чтении счетчиков попыток проверки OTP", e);
+            return null;
+        }
+    }
+
+    /**
+     * Удаляет счетчики устаревших окон
+     * @param bucket номер окна, начиная с которого счетчики сохраняются
+     * @return количество удаленных строк или -1 при ошибке
+     */
+    public int deleteBucketsBefore(long bucket) {
+        String sql = "DELETE FROM otp_attempts WHERE bucket < ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, bucket);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при удалении устаревших счетчиков попыток", e);
+            return -1;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package org.example.dao;
 
 import org.example.config.DatabaseConfig;
 import org.example.model.OtpConfig;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
 
 import java.sql.*;
 import java.util.Optional;
@@ -10,61 +12,16 @@ import java.util.logging.Logger;
 
 /**
  * Data Access Object (DAO) для работы с конфигурацией OTP в базе данных.
+ * Таблица и конфигурация по умолчанию создаются миграциями (см. SchemaMigrator).
  * Обеспечивает:
- * - Создание таблицы при инициализации
- * - Установку конфигурации по умолчанию
  * - Получение и обновление параметров OTP
+ * - Уведомление других узлов об изменении конфигурации (LISTEN/NOTIFY)
  */
 public class OtpConfigDao {
     private static final Logger logger = Logger.getLogger(OtpConfigDao.class.getName());
 
-    public OtpConfigDao() {
-        initializeTable();
-        createDefaultConfigIfNotExists();
-    }
-
-    /**
-     * Создает таблицу otp_config, если она не существует.
-     * Структура таблицы:
-     * - id: первичный ключ
-     * - code_length: длина генерируемого кода
-     * - lifetime_in_minutes: время жизни кода в минутах
-     */
-    private void initializeTable() {
-        String sql = "CREATE TABLE IF NOT EXISTS otp_config (" +
-                "id SERIAL PRIMARY KEY, " +
-                "code_length INT NOT NULL, " +
-                "lifetime_in_minutes INT NOT NULL" +
-                ")";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-            logger.info("Таблица otp_config инициализирована");
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Ошибка при инициализации таблицы otp_config", e);
-        }
-    }
-
-    /**
-     * Создает конфигурацию по умолчанию (6 символов, 5 минут),
-     * если таблица пустая
-     */
-    private void createDefaultConfigIfNotExists() {
-        String countSql = "SELECT COUNT(*) FROM otp_config";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(countSql)) {
-            if (rs.next() && rs.getInt(1) == 0) {
-                String insertSql = "INSERT INTO otp_config (code_length, lifetime_in_minutes) VALUES (6, 5)";
-                stmt.execute(insertSql);
-                logger.info("Создана конфигурация OTP по умолчанию");
-            }
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Ошибка при создании конфигурации по умолчанию", e);
-        }
-    }
+    // Канал PostgreSQL NOTIFY для изменений конфигурации
+    private static final String CHANGE_CHANNEL = "otp_config_changed";
 
     /**
      * Получает текущую конфигурацию OTP из базы данных
@@ -90,24 +47,68 @@ public class OtpConfigDao {
     }
 
     /**
-     * Обновляет параметры OTP в базе данных
+     * Обновляет параметры OTP в базе данных.
+     * В той же транзакции отправляется NOTIFY, поэтому другие узлы узнают об изменении
+     * только после его фиксации.
      * @param config новая конфигурация
      * @return true если обновление успешно, false в случае ошибки
      */
     public boolean updateConfig(OtpConfig config) {
         String sql = "UPDATE otp_config SET code_length = ?, lifetime_in_minutes = ? WHERE id = ?";
+        String notifySql = "SELECT pg_notify(?, ?)";
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, config.getCodeLength());
-            pstmt.setInt(2, config.getLifetimeInMinutes());
-            pstmt.setLong(3, config.getId());
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                 PreparedStatement notify = conn.prepareStatement(notifySql)) {
+                pstmt.setInt(1, config.getCodeLength());
+                pstmt.setInt(2, config.getLifetimeInMinutes());
+                pstmt.setLong(3, config.getId());
 
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+                int affectedRows = pstmt.executeUpdate();
+                if (affectedRows > 0) {
+                    notify.setString(1, CHANGE_CHANNEL);
+                    notify.setString(2, String.valueOf(config.getId()));
+                    notify.execute();
+                }
+                conn.commit();
+                return affectedRows > 0;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Ошибка при обновлении конфигурации OTP", e);
             return false;
         }
     }
+
+    /**
+     * Открывает отдельное (вне пула) соединение, подписанное на изменения конфигурации.
+     * Соединение закрывает вызывающий код.
+     * @return соединение с выполненным LISTEN
+     */
+    public Connection openChangeListener() throws SQLException {
+        Connection conn = DatabaseConfig.openDedicatedConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("LISTEN " + CHANGE_CHANNEL);
+            return conn;
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ожидает уведомления об изменении конфигурации на соединении из openChangeListener()
+     * @param listener соединение с выполненным LISTEN
+     * @param timeoutMs максимальное время ожидания
+     * @return true, если пришло хотя бы одно уведомление
+     */
+    public boolean awaitChange(Connection listener, int timeoutMs) throws SQLException {
+        PGNotification[] notifications = listener.unwrap(PGConnection.class).getNotifications(timeoutMs);
+        return notifications != null && notifications.length > 0;
+    }
 }
@@ -2,68 +2,196 @@ package org.example.dao;
 
 import org.example.config.DatabaseConfig;
 import org.example.model.Otp;
+import org.example.model.OtpVerificationItem;
+import org.example.model.OtpVerificationResult;
+import org.example.model.OutboxMessage;
 
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Data Access Object (DAO) для работы с OTP-кодами в базе данных.
  * Обеспечивает CRUD-операции и дополнительные методы для управления OTP.
+ * Таблица otps секционирована по created_at (см. OtpPartitionDao), поэтому запросы
+ * по активным и проверяемым кодам ограничены окном LOOKUP_WINDOW и затрагивают
+ * только последние секции.
  */
 public class OtpDao {
     private static final Logger logger = Logger.getLogger(OtpDao.class.getName());
 
-    public OtpDao() {
-        initializeTable();
+    // Окно поиска по created_at. Время жизни кода не превышает OtpConfig.MAX_LIFETIME_MINUTES
+    // (проверяется при обновлении конфигурации), более старые коды не могут быть активными и не проверяются
+    static final Duration LOOKUP_WINDOW = Duration.ofDays(1);
+
+    // Столбцы OTP в порядке, ожидаемом OTP_MAPPER
+    private static final String OTP_COLUMNS = "id, user_id, operation_id, code, created_at, expires_at, status";
+
+    private static final RowMapper<Otp> OTP_MAPPER = rs -> {
+        Otp otp = new Otp();
+        otp.setId(rs.getLong(1));
+        otp.setUserId(rs.getLong(2));
+        otp.setOperationId(rs.getString(3));
+        otp.setCode(rs.getString(4));
+        otp.setCreatedAt(rs.getTimestamp(5).toLocalDateTime());
+        otp.setExpiresAt(rs.getTimestamp(6).toLocalDateTime());
+        otp.setStatus(rs.getString(7));
+        return otp;
+    };
+
+    /**
+     * Сохраняет OTP-код в базу данных
+     * @param otp объект OTP для сохранения
+     * @return сохраненный объект OTP с присвоенным ID
+     */
+    public Otp save(Otp otp) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            insert(conn, otp);
+            return otp;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при сохранении OTP", e);
+        }
+        return null;
     }
 
     /**
-     * Создает таблицу otps при инициализации DAO.
-     * Структура таблицы:
-     * - id: первичный ключ
-     * - user_id: ссылка на пользователя
-     * - operation_id: идентификатор операции
-     * - code: OTP-код
-     * - created_at/expires_at: временные метки
-     * - status: статус кода (ACTIVE/EXPIRED/USED)
+     * Сохраняет OTP-код и запись об уведомлении в outbox в одной транзакции.
+     * Уведомление будет доставлено диспетчером после фиксации транзакции.
+     * @param otp объект OTP для сохранения
+     * @param message уведомление для outbox (otpId заполняется автоматически)
+     * @return сохраненный объект OTP с присвоенным ID или null при ошибке
      */
-    private void initializeTable() {
-        String sql = "CREATE TABLE IF NOT EXISTS otps (" +
-                "id SERIAL PRIMARY KEY, " +
-                "user_id INT NOT NULL, " +
-                "operation_id VARCHAR(100) NOT NULL, " +
-                "code VARCHAR(10) NOT NULL, " +
-                "created_at TIMESTAMP NOT NULL, " +
-                "expires_at TIMESTAMP NOT NULL, " +
-                "status VARCHAR(10) NOT NULL, " +
-                "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE" +
-                ")";
+    public Otp saveWithOutbox(Otp otp, OutboxMessage message) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                insert(conn, otp);
+                message.setOtpId(otp.getId());
+                OutboxDao.insert(conn, message);
+                conn.commit();
+                return otp;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при сохранении OTP с уведомлением", e);
+        }
+        return null;
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-            logger.info("Таблица otps инициализирована");
+    /**
+     * Сохраняет пачку OTP-кодов и их уведомления в outbox в одной транзакции.
+     * ID выделяются одним запросом к последовательности, затем каждая таблица
+     * заполняется одним многострочным INSERT (unnest массивов).
+     * @param otps OTP-коды для сохранения (ID присваиваются автоматически)
+     * @param messages уведомления, messages.get(i) относится к otps.get(i)
+     * @return true, если вся пачка сохранена
+     */
+    public boolean saveAllWithOutbox(List<Otp> otps, List<OutboxMessage> messages) {
+        if (otps.isEmpty()) {
+            return true;
+        }
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                assignIds(conn, otps);
+                insertAll(conn, otps);
+                for (int i = 0; i < otps.size(); i++) {
+                    messages.get(i).setOtpId(otps.get(i).getId());
+                }
+                OutboxDao.insertAll(conn, messages);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                otps.forEach(otp -> otp.setId(null));
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Ошибка при инициализации таблицы otps", e);
+            logger.log(Level.SEVERE, "Ошибка при пакетном сохранении OTP", e);
+            return false;
         }
     }
 
     /**
-     * Сохраняет OTP-код в базу данных
-     * @param otp объект OTP для сохранения
-     * @return сохраненный объект OTP с присвоенным ID
+     * Выделяет ID для пачки OTP одним запросом к последовательности таблицы
      */
-    public Otp save(Otp otp) {
+    private void assignIds(Connection conn, List<Otp> otps) throws SQLException {
+        String sql = "SELECT nextval(pg_get_serial_sequence('otps', 'id')) FROM generate_series(1, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, otps.size());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                for (Otp otp : otps) {
+                    if (!rs.next()) {
+                        throw new SQLException("Последовательность вернула меньше ID, чем OTP в пачке");
+                    }
+                    otp.setId(rs.getLong(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Вставляет пачку OTP с уже выделенными ID одним запросом
+     */
+    private void insertAll(Connection conn, List<Otp> otps) throws SQLException {
+        String sql = "INSERT INTO otps (id, user_id, operation_id, code, created_at, expires_at, status) " +
+                "SELECT * FROM unnest(?::bigint[], ?::bigint[], ?::varchar[], ?::varchar[], " +
+                "?::timestamp[], ?::timestamp[], ?::varchar[])";
+
+        int size = otps.size();
+        Long[] ids = new Long[size];
+        Long[] userIds = new Long[size];
+        String[] operationIds = new String[size];
+        String[] codes = new String[size];
+        Timestamp[] createdAt = new Timestamp[size];
+        Timestamp[] expiresAt = new Timestamp[size];
+        String[] statuses = new String[size];
+        for (int i = 0; i < size; i++) {
+            Otp otp = otps.get(i);
+            ids[i] = otp.getId();
+            userIds[i] = otp.getUserId();
+            operationIds[i] = otp.getOperationId();
+            codes[i] = otp.getCode();
+            createdAt[i] = Timestamp.valueOf(otp.getCreatedAt());
+            expiresAt[i] = Timestamp.valueOf(otp.getExpiresAt());
+            statuses[i] = otp.getStatus();
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("bigint", ids));
+            pstmt.setArray(2, conn.createArrayOf("bigint", userIds));
+            pstmt.setArray(3, conn.createArrayOf("varchar", operationIds));
+            pstmt.setArray(4, conn.createArrayOf("varchar", codes));
+            pstmt.setArray(5, conn.createArrayOf("timestamp", createdAt));
+            pstmt.setArray(6, conn.createArrayOf("timestamp", expiresAt));
+            pstmt.setArray(7, conn.createArrayOf("varchar", statuses));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Вставляет строку OTP и присваивает объекту сгенерированный ID
+     */
+    private void insert(Connection conn, Otp otp) throws SQLException {
         String sql = "INSERT INTO otps (user_id, operation_id, code, created_at, expires_at, status) " +
                 "VALUES (?, ?, ?, ?, ?, ?) RETURNING id";
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             // Установка параметров запроса
             pstmt.setLong(1, otp.getUserId());
             pstmt.setString(2, otp.getOperationId());
@@ -72,19 +200,13 @@ public class OtpDao {
             pstmt.setTimestamp(5, Timestamp.valueOf(otp.getExpiresAt()));
             pstmt.setString(6, otp.getStatus());
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        otp.setId(rs.getLong(1));
-                        return otp;
-                    }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("INSERT не вернул ID для OTP");
                 }
+                otp.setId(rs.getLong(1));
             }
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Ошибка при сохранении OTP", e);
         }
-        return null;
     }
 
     /**
@@ -94,31 +216,173 @@ public class OtpDao {
      * @return Optional с найденным OTP или пустой
      */
     public Optional<Otp> findByCodeAndOperationId(String code, String operationId) {
-        String sql = "SELECT id, user_id, operation_id, code, created_at, expires_at, status " +
-                "FROM otps WHERE code = ? AND operation_id = ?";
+        String sql = "SELECT " + OTP_COLUMNS + " FROM otps " +
+                "WHERE code = ? AND operation_id = ? AND created_at >= ? ORDER BY id DESC";
+
+        try {
+            return Jdbc.queryOne(sql, pstmt -> {
+                pstmt.setString(1, code);
+                pstmt.setString(2, operationId);
+                pstmt.setTimestamp(3, lookupFrom());
+            }, OTP_MAPPER);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при поиске OTP по коду и операции", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Атомарно проверяет OTP-код и переводит его в USED одним запросом.
+     * Строка блокируется (FOR UPDATE), поэтому из нескольких одновременных
+     * проверок одного кода успешной будет только одна.
+     * Просроченный активный код в том же запросе переводится в EXPIRED.
+     * @param code код подтверждения
+     * @param operationId идентификатор операции
+     * @return результат проверки
+     */
+    public OtpVerificationResult verifyAndMarkUsed(String code, String operationId) {
+        String sql = "WITH target AS (" +
+                "SELECT id, created_at, status, expires_at FROM otps " +
+                "WHERE code = ? AND operation_id = ? AND created_at >= ? " +
+                "ORDER BY id DESC LIMIT 1 FOR UPDATE" +
+                "), updated AS (" +
+                "UPDATE otps o SET status = CASE WHEN t.expires_at < ? THEN 'EXPIRED' ELSE 'USED' END " +
+                "FROM target t WHERE o.id = t.id AND o.created_at = t.created_at " +
+                "AND o.created_at >= ? AND t.status = 'ACTIVE' " +
+                "RETURNING o.status" +
+                ") " +
+                "SELECT t.status, u.status FROM target t LEFT JOIN updated u ON true";
 
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            Timestamp from = lookupFrom();
             pstmt.setString(1, code);
             pstmt.setString(2, operationId);
+            pstmt.setTimestamp(3, from);
+            pstmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            pstmt.setTimestamp(5, from);
 
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    Otp otp = new Otp();
-                    otp.setId(rs.getLong("id"));
-                    otp.setUserId(rs.getLong("user_id"));
-                    otp.setOperationId(rs.getString("operation_id"));
-                    otp.setCode(rs.getString("code"));
-                    otp.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                    otp.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
-                    otp.setStatus(rs.getString("status"));
-                    return Optional.of(otp);
+                if (!rs.next()) {
+                    return OtpVerificationResult.NOT_FOUND;
                 }
+                String previousStatus = rs.getString(1);
+                String newStatus = rs.getString(2);
+                if (newStatus != null) {
+                    return "USED".equals(newStatus) ? OtpVerificationResult.USED : OtpVerificationResult.EXPIRED;
+                }
+                return "USED".equals(previousStatus)
+                        ? OtpVerificationResult.ALREADY_USED
+                        : OtpVerificationResult.EXPIRED;
             }
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Ошибка при поиске OTP по коду и операции", e);
+            logger.log(Level.SEVERE, "Ошибка при проверке OTP", e);
+            return OtpVerificationResult.ERROR;
         }
-        return Optional.empty();
+    }
+
+    /**
+     * Проверяет пачку OTP-кодов одним запросом с той же семантикой, что и verifyAndMarkUsed:
+     * для каждой пары (code, operationId) берется самый новый код, активный код переводится
+     * в USED или EXPIRED. Повтор пары в пачке считается повторным использованием кода.
+     * Результат записывается в каждый элемент.
+     * Пачка передается массивами (unnest), поэтому текст запроса не зависит от ее размера
+     * и используется один подготовленный на сервере оператор.
+     * @param items элементы пачки
+     * @return false при ошибке БД (результаты не записываются)
+     */
+    public boolean verifyAndMarkUsedAll(List<OtpVerificationItem> items) {
+        // Уникальные пары пачки: первый элемент с парой и его номер во входных данных запроса
+        Map<String, Integer> firstIndex = new HashMap<>();
+        List<OtpVerificationItem> distinct = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            OtpVerificationItem item = items.get(i);
+            if (firstIndex.putIfAbsent(pairKey(item), distinct.size()) == null) {
+                distinct.add(item);
+            }
+        }
+        if (distinct.isEmpty()) {
+            return true;
+        }
+
+        String sql = "WITH input AS (" +
+                "SELECT * FROM unnest(?::int[], ?::varchar[], ?::varchar[]) AS t(idx, code, operation_id)" +
+                "), " +
+                "target AS (" +
+                "SELECT i.idx, o.id, o.created_at, o.status, o.expires_at FROM input i CROSS JOIN LATERAL (" +
+                "SELECT id, created_at, status, expires_at FROM otps " +
+                "WHERE code = i.code AND operation_id = i.operation_id AND created_at >= ? " +
+                "ORDER BY id DESC LIMIT 1 FOR UPDATE) o" +
+                "), updated AS (" +
+                "UPDATE otps o SET status = CASE WHEN t.expires_at < ? THEN 'EXPIRED' ELSE 'USED' END " +
+                "FROM target t WHERE o.id = t.id AND o.created_at = t.created_at " +
+                "AND o.created_at >= ? AND t.status = 'ACTIVE' " +
+                "RETURNING o.id, o.status" +
+                ") " +
+                "SELECT t.idx, t.status, u.status FROM target t LEFT JOIN updated u ON u.id = t.id";
+
+        OtpVerificationResult[] results = new OtpVerificationResult[distinct.size()];
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int size = distinct.size();
+            Integer[] indexes = new Integer[size];
+            String[] codes = new String[size];
+            String[] operationIds = new String[size];
+            for (int i = 0; i < size; i++) {
+                indexes[i] = i;
+                codes[i] = distinct.get(i).getCode();
+                operationIds[i] = distinct.get(i).getOperationId();
+            }
+            Timestamp from = lookupFrom();
+            pstmt.setArray(1, conn.createArrayOf("int4", indexes));
+            pstmt.setArray(2, conn.createArrayOf("varchar", codes));
+            pstmt.setArray(3, conn.createArrayOf("varchar", operationIds));
+            pstmt.setTimestamp(4, from);
+            pstmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            pstmt.setTimestamp(6, from);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String previousStatus = rs.getString(2);
+                    String newStatus = rs.getString(3);
+                    OtpVerificationResult result;
+                    if (newStatus != null) {
+                        result = "USED".equals(newStatus) ? OtpVerificationResult.USED : OtpVerificationResult.EXPIRED;
+                    } else {
+                        result = "USED".equals(previousStatus)
+                                ? OtpVerificationResult.ALREADY_USED
+                                : OtpVerificationResult.EXPIRED;
+                    }
+                    results[rs.getInt(1)] = result;
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при пакетной проверке OTP", e);
+            return false;
+        }
+
+        boolean[] seen = new boolean[distinct.size()];
+        for (OtpVerificationItem item : items) {
+            int idx = firstIndex.get(pairKey(item));
+            OtpVerificationResult result = results[idx] != null ? results[idx] : OtpVerificationResult.NOT_FOUND;
+            if (seen[idx] && result == OtpVerificationResult.USED) {
+                result = OtpVerificationResult.ALREADY_USED;
+            }
+            seen[idx] = true;
+            item.setResult(result);
+        }
+        return true;
+    }
+
+    /**
+     * Нижняя граница created_at для запросов по активным и проверяемым кодам
+     */
+    private static Timestamp lookupFrom() {
+        return Timestamp.valueOf(LocalDateTime.now().minus(LOOKUP_WINDOW));
+    }
+
+    private static String pairKey(OtpVerificationItem item) {
+        return item.getOperationId() + '\0' + item.getCode();
     }
 
     /**
@@ -144,35 +408,192 @@ public class OtpDao {
     }
 
     /**
-     * Находит все активные OTP-коды с истекшим сроком действия
-     * @return список просроченных OTP
+     * Переводит в указанный статус перечисленные OTP-коды, если они все еще активны
+     * @param ids идентификаторы OTP
+     * @param status новый статус (EXPIRED/USED)
+     * @return количество обновленных строк или -1 при ошибке
      */
-    public List<Otp> findExpiredActiveCodes() {
-        List<Otp> expiredCodes = new ArrayList<>();
-        String sql = "SELECT id, user_id, operation_id, code, created_at, expires_at, status " +
-                "FROM otps WHERE status = 'ACTIVE' AND expires_at < ?";
+    public int updateActiveStatusByIds(List<Long> ids, String status) {
+        String sql = "UPDATE otps SET status = ? WHERE id = ANY(?) AND status = 'ACTIVE' AND created_at >= ?";
 
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, status);
+            pstmt.setArray(2, conn.createArrayOf("bigint", ids.toArray()));
+            pstmt.setTimestamp(3, lookupFrom());
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при пакетном обновлении статуса OTP", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Помечает как EXPIRED одну порцию активных просроченных OTP-кодов.
+     * Обновление выполняется на стороне БД одним запросом, строки в приложение не загружаются.
+     * Строки, заблокированные параллельными транзакциями (например, проверкой кода), пропускаются.
+     * Строки выбираются по (id, created_at), а не по ctid: ctid уникален только внутри секции.
+     * @param limit максимальный размер порции
+     * @return количество обновленных строк или -1 при ошибке
+     */
+    public int expireActiveChunk(int limit) {
+        String sql = "UPDATE otps SET status = 'EXPIRED' " +
+                "WHERE (id, created_at) IN (" +
+                "SELECT id, created_at FROM otps WHERE status = 'ACTIVE' AND expires_at < ? AND created_at >= ? " +
+                "LIMIT ? FOR UPDATE SKIP LOCKED" +
+                ") AND status = 'ACTIVE' AND created_at >= ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            Timestamp from = lookupFrom();
             pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            pstmt.setTimestamp(2, from);
+            pstmt.setInt(3, limit);
+            pstmt.setTimestamp(4, from);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при пометке просроченных OTP", e);
+            return -1;
+        }
+    }
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Otp otp = new Otp();
-                    otp.setId(rs.getLong("id"));
-                    otp.setUserId(rs.getLong("user_id"));
-                    otp.setOperationId(rs.getString("operation_id"));
-                    otp.setCode(rs.getString("code"));
-                    otp.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                    otp.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
-                    otp.setStatus(rs.getString("status"));
-                    expiredCodes.add(otp);
+    /**
+     * Помечает как EXPIRED перечисленные OTP-коды, если они все еще активны и уже просрочены
+     * @param ids идентификаторы OTP
+     * @return количество обновленных строк или -1 при ошибке
+     */
+    public int expireByIds(List<Long> ids) {
+        String sql = "UPDATE otps SET status = 'EXPIRED' " +
+                "WHERE id = ANY(?) AND status = 'ACTIVE' AND expires_at <= ? AND created_at >= ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            pstmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            pstmt.setTimestamp(3, lookupFrom());
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при пометке OTP как истёкших", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Помечает как EXPIRED все активные OTP-коды операции (например, после подбора кода)
+     * @param operationId идентификатор операции
+     * @return количество обновленных строк или -1 при ошибке
+     */
+    public int expireActiveByOperationId(String operationId) {
+        String sql = "UPDATE otps SET status = 'EXPIRED' " +
+                "WHERE operation_id = ? AND status = 'ACTIVE' AND created_at >= ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, operationId);
+            pstmt.setTimestamp(2, lookupFrom());
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при аннулировании OTP операции", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Потоково перебирает все активные OTP-коды.
+     * Строки читаются курсором порциями, весь результат в памяти не накапливается.
+     * @param fetchSize размер порции чтения
+     * @param consumer обработчик OTP (заполнены id, userId, operationId, code, expiresAt и status)
+     * @return количество прочитанных строк или -1 при ошибке
+     */
+    public long forEachActive(int fetchSize, Consumer<Otp> consumer) {
+        String sql = "SELECT id, user_id, operation_id, code, expires_at FROM otps " +
+                "WHERE status = 'ACTIVE' AND created_at >= ?";
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // Курсорное чтение в PostgreSQL работает только внутри транзакции
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setTimestamp(1, lookupFrom());
+                pstmt.setFetchSize(fetchSize);
+                long count = 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Otp otp = new Otp();
+                        otp.setId(rs.getLong(1));
+                        otp.setUserId(rs.getLong(2));
+                        otp.setOperationId(rs.getString(3));
+                        otp.setCode(rs.getString(4));
+                        otp.setExpiresAt(rs.getTimestamp(5).toLocalDateTime());
+                        otp.setStatus("ACTIVE");
+                        consumer.accept(otp);
+                        count++;
+                    }
+                }
+                return count;
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при чтении активных OTP", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Потоково перебирает строки секции otps для архивации.
+     * Архивируются только секции старше окна поиска, их коды давно не могут быть активными,
+     * поэтому оставшийся статус ACTIVE отдается как EXPIRED.
+     * @param partition имя секции (из OtpPartitionDao)
+     * @param fetchSize размер порции чтения
+     * @param consumer обработчик OTP
+     * @return количество прочитанных строк или -1 при ошибке
+     */
+    public long forEachInPartition(String partition, int fetchSize, Consumer<Otp> consumer) {
+        String sql = "SELECT id, user_id, operation_id, code, created_at, expires_at, " +
+                "CASE WHEN status = 'ACTIVE' THEN 'EXPIRED' ELSE status END " +
+                "FROM " + partition + " ORDER BY id";
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // Курсорное чтение в PostgreSQL работает только внутри транзакции
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(fetchSize);
+                long count = 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(OTP_MAPPER.map(rs));
+                        count++;
+                    }
                 }
+                return count;
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
             }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при чтении секции " + partition + " для архивации", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Находит все активные OTP-коды с истекшим сроком действия
+     * @return список просроченных OTP
+     */
+    public List<Otp> findExpiredActiveCodes() {
+        String sql = "SELECT " + OTP_COLUMNS + " FROM otps " +
+                "WHERE status = 'ACTIVE' AND expires_at < ? AND created_at >= ?";
+
+        try {
+            return Jdbc.queryList(sql, pstmt -> {
+                pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                pstmt.setTimestamp(2, lookupFrom());
+            }, OTP_MAPPER);
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Ошибка при поиске просроченных OTP", e);
+            return new ArrayList<>();
         }
-        return expiredCodes;
     }
 
     /**
@@ -181,31 +602,14 @@ public class OtpDao {
      * @return список OTP пользователя
      */
     public List<Otp> findByUserId(Long userId) {
-        List<Otp> userOtps = new ArrayList<>();
-        String sql = "SELECT id, user_id, operation_id, code, created_at, expires_at, status " +
-                "FROM otps WHERE user_id = ?";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setLong(1, userId);
+        String sql = "SELECT " + OTP_COLUMNS + " FROM otps WHERE user_id = ?";
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Otp otp = new Otp();
-                    otp.setId(rs.getLong("id"));
-                    otp.setUserId(rs.getLong("user_id"));
-                    otp.setOperationId(rs.getString("operation_id"));
-                    otp.setCode(rs.getString("code"));
-                    otp.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                    otp.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
-                    otp.setStatus(rs.getString("status"));
-                    userOtps.add(otp);
-                }
-            }
+        try {
+            return Jdbc.queryList(sql, pstmt -> pstmt.setLong(1, userId), OTP_MAPPER);
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Ошибка при поиске OTP пользователя", e);
+            return new ArrayList<>();
         }
-        return userOtps;
     }
 
     /**
@@ -0,0 +1,275 @@
+package org.example.dao;
+
+import org.example.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Data Access Object (DAO) для обслуживания секций таблицы otps.
+ * Таблица секционирована по created_at по суткам: секция otps_pYYYYMMDD
+ * содержит строки с created_at в [день, следующий день).
+ * Операции выполняются под advisory-блокировкой транзакции, поэтому
+ * обслуживание, запущенное одновременно на нескольких узлах, не конфликтует.
+ * Секции удаляются только после архивации (см. OtpArchiver): архивированные
+ * секции отмечаются в таблице otp_archived_partitions.
+ */
+public class OtpPartitionDao {
+    private static final Logger logger = Logger.getLogger(OtpPartitionDao.class.getName());
+
+    // Ключ advisory-блокировки обслуживания секций
+    private static final long LOCK_KEY = 0x6f74705f70617274L;
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // Верхняя граница секции в выражении pg_get_expr(relpartbound)
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    /**
+     * Создает суточные секции от firstDay на указанное число дней вперед.
+     * Дни, уже покрытые существующими секциями, пропускаются.
+     * Строки дня, попавшие в секцию по умолчанию (обслуживание отстало), переносятся
+     * в новую секцию: иначе PostgreSQL не дает создать секцию, пересекающуюся с ними.
+     * @param firstDay первый день
+     * @param days число дней
+     * @return количество созданных секций или -1 при ошибке
+     */
+    public int createDailyPartitions(LocalDate firstDay, int days) {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                lock(conn);
+                LocalDateTime coveredUntil = null;
+                for (LocalDateTime bound : findUpperBounds(conn).values()) {
+                    if (bound != null && (coveredUntil == null || bound.isAfter(coveredUntil))) {
+                        coveredUntil = bound;
+                    }
+                }
+
+                int created = 0;
+                for (int i = 0; i < days; i++) {
+                    LocalDate day = firstDay.plusDays(i);
+                    if (coveredUntil != null && day.atStartOfDay().isBefore(coveredUntil)) {
+                        continue;
+                    }
+                    String name = partitionName(day);
+                    String bounds = "FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')";
+                    String range = "created_at >= '" + day + "' AND created_at < '" + day.plusDays(1) + "'";
+                    if (exists(conn, "SELECT 1 FROM otps_default WHERE " + range)) {
+                        stmt.execute("CREATE TABLE " + name + " (LIKE otps INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                        int moved = stmt.executeUpdate("WITH moved AS (DELETE FROM otps_default WHERE " + range +
+                                " RETURNING *) INSERT INTO " + name + " SELECT * FROM moved");
+                        stmt.execute("ALTER TABLE otps ATTACH PARTITION " + name + " " + bounds);
+                        logger.warning("Строки за " + day + " перенесены из секции по умолчанию в " + name
+                                + ": " + moved);
+                    } else {
+                        stmt.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF otps " + bounds);
+                    }
+                    created++;
+                }
+                boolean defaultRows = exists(conn, "SELECT 1 FROM otps_default");
+                conn.commit();
+                if (defaultRows) {
+                    logger.warning("В секции по умолчанию otps_default остаются строки вне суточных секций");
+                }
+                return created;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при создании секций otps", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Отсоединяет и удаляет архивированные секции, все строки которых созданы раньше cutoff.
+     * Неархивированные секции не удаляются при любом cutoff.
+     * Секции внутри окна поиска OtpDao.LOOKUP_WINDOW не удаляются при любом cutoff.
+     * @param cutoff граница хранения
+     * @return количество удаленных секций или -1 при ошибке
+     */
+    public int dropPartitionsBefore(LocalDateTime cutoff) {
+        LocalDateTime bound = closedBound(cutoff);
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                lock(conn);
+                Set<String> archived = findArchived(conn);
+                int dropped = 0;
+                int unarchived = 0;
+                for (Map.Entry<String, LocalDateTime> partition : findUpperBounds(conn).entrySet()) {
+                    LocalDateTime upper = partition.getValue();
+                    if (upper == null || upper.isAfter(bound)) {
+                        continue;
+                    }
+                    if (!archived.contains(partition.getKey())) {
+                        unarchived++;
+                        continue;
+                    }
+                    stmt.execute("ALTER TABLE otps DETACH PARTITION " + partition.getKey());
+                    stmt.execute("DROP TABLE " + partition.getKey());
+                    logger.info("Удалена секция " + partition.getKey() + " (строки до " + upper + ")");
+                    dropped++;
+                }
+                conn.commit();
+                if (unarchived > 0) {
+                    logger.warning("Секций otps старше срока хранения, ожидающих архивации: " + unarchived);
+                }
+                return dropped;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при удалении старых секций otps", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Находит неархивированные секции, все строки которых созданы раньше cutoff
+     * (но не позже окна поиска OtpDao.LOOKUP_WINDOW), в порядке верхней границы
+     * @param cutoff граница архивации
+     * @return имена секций или null при ошибке
+     */
+    public List<String> findUnarchivedBefore(LocalDateTime cutoff) {
+        LocalDateTime bound = closedBound(cutoff);
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            Set<String> archived = findArchived(conn);
+            List<Map.Entry<String, LocalDateTime>> closed = new ArrayList<>();
+            for (Map.Entry<String, LocalDateTime> partition : findUpperBounds(conn).entrySet()) {
+                LocalDateTime upper = partition.getValue();
+                if (upper != null && !upper.isAfter(bound) && !archived.contains(partition.getKey())) {
+                    closed.add(partition);
+                }
+            }
+            closed.sort(Map.Entry.comparingByValue());
+
+            List<String> names = new ArrayList<>();
+            for (Map.Entry<String, LocalDateTime> partition : closed) {
+                names.add(partition.getKey());
+            }
+            return names;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при поиске секций otps для архивации", e);
+            return null;
+        }
+    }
+
+    /**
+     * Имена архивированных секций (в том числе уже удаленных)
+     * @return множество имен или null при ошибке
+     */
+    public Set<String> findArchivedPartitions() {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return findArchived(conn);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при чтении архивированных секций otps", e);
+            return null;
+        }
+    }
+
+    /**
+     * Отмечает секцию архивированной: после этого она может быть удалена по сроку хранения
+     * @param partition имя секции
+     * @param rows количество архивированных строк
+     * @return true если отметка сохранена
+     */
+    public boolean markArchived(String partition, long rows) {
+        String sql = "INSERT INTO otp_archived_partitions (partition_name, row_count, archived_at) " +
+                "VALUES (?, ?, ?) ON CONFLICT (partition_name) DO NOTHING";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, partition);
+            pstmt.setLong(2, rows);
+            pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            pstmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при отметке архивации секции " + partition, e);
+            return false;
+        }
+    }
+
+    private Set<String> findArchived(Connection conn) throws SQLException {
+        Set<String> archived = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT partition_name FROM otp_archived_partitions");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                archived.add(rs.getString(1));
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Граница закрытых секций: не позже окна поиска OtpDao.LOOKUP_WINDOW
+     */
+    private static LocalDateTime closedBound(LocalDateTime cutoff) {
+        LocalDateTime lookupFrom = LocalDateTime.now().minus(OtpDao.LOOKUP_WINDOW);
+        return cutoff.isBefore(lookupFrom) ? cutoff : lookupFrom;
+    }
+
+    /**
+     * Секции otps и их верхние границы (null для секции по умолчанию)
+     */
+    private Map<String, LocalDateTime> findUpperBounds(Connection conn) throws SQLException {
+        String sql = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = 'otps'::regclass ORDER BY c.relname";
+
+        Map<String, LocalDateTime> bounds = new LinkedHashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Matcher matcher = UPPER_BOUND.matcher(rs.getString(2));
+                bounds.put(rs.getString(1),
+                        matcher.find() ? Timestamp.valueOf(matcher.group(1)).toLocalDateTime() : null);
+            }
+        }
+        return bounds;
+    }
+
+    private boolean exists(Connection conn, String query) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT EXISTS (" + query + ")")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private void lock(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+        }
+    }
+
+    private static String partitionName(LocalDate day) {
+        return "otps_p" + day.format(NAME_FORMAT);
+    }
+}
@@ -0,0 +1,198 @@
+package org.example.dao;
+
+import org.example.config.DatabaseConfig;
+import org.example.model.OutboxMessage;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object (DAO) для очереди исходящих уведомлений (transactional outbox).
+ * Записи добавляются в одной транзакции с OTP (см. OtpDao.saveWithOutbox),
+ * а затем забираются диспетчером пачками с арендой (lease):
+ * если обработчик упал, запись снова станет доступной после истечения аренды.
+ */
+public class OutboxDao {
+    private static final Logger logger = Logger.getLogger(OutboxDao.class.getName());
+
+    /**
+     * Добавляет запись в outbox в рамках транзакции вызывающего кода
+     * @param conn соединение с открытой транзакцией
+     * @param message запись для добавления
+     */
+    static void insert(Connection conn, OutboxMessage message) throws SQLException {
+        String sql = "INSERT INTO notification_outbox " +
+                "(otp_id, channel, destination, operation_id, code, status, next_attempt_at, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, 'PENDING', ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            LocalDateTime now = LocalDateTime.now();
+            pstmt.setLong(1, message.getOtpId());
+            pstmt.setString(2, message.getChannel());
+            pstmt.setString(3, message.getDestination());
+            pstmt.setString(4, message.getOperationId());
+            pstmt.setString(5, message.getCode());
+            pstmt.setTimestamp(6, Timestamp.valueOf(now));
+            pstmt.setTimestamp(7, Timestamp.valueOf(now));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Добавляет пачку записей в outbox одним запросом в рамках транзакции вызывающего кода
+     * @param conn соединение с открытой транзакцией
+     * @param messages записи для добавления
+     */
+    static void insertAll(Connection conn, List<OutboxMessage> messages) throws SQLException {
+        String sql = "INSERT INTO notification_outbox " +
+                "(otp_id, channel, destination, operation_id, code, status, next_attempt_at, created_at) " +
+                "SELECT t.otp_id, t.channel, t.destination, t.operation_id, t.code, 'PENDING', ?, ? " +
+                "FROM unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[]) " +
+                "AS t(otp_id, channel, destination, operation_id, code)";
+
+        int size = messages.size();
+        Long[] otpIds = new Long[size];
+        String[] channels = new String[size];
+        String[] destinations = new String[size];
+        String[] operationIds = new String[size];
+        String[] codes = new String[size];
+        for (int i = 0; i < size; i++) {
+            OutboxMessage message = messages.get(i);
+            otpIds[i] = message.getOtpId();
+            channels[i] = message.getChannel();
+            destinations[i] = message.getDestination();
+            operationIds[i] = message.getOperationId();
+            codes[i] = message.getCode();
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            pstmt.setTimestamp(1, now);
+            pstmt.setTimestamp(2, now);
+            pstmt.setArray(3, conn.createArrayOf("bigint", otpIds));
+            pstmt.setArray(4, conn.createArrayOf("varchar", channels));
+            pstmt.setArray(5, conn.createArrayOf("varchar", destinations));
+            pstmt.setArray(6, conn.createArrayOf("varchar", operationIds));
+            pstmt.setArray(7, conn.createArrayOf("varchar", codes));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Забирает пачку готовых к доставке записей канала.
+     * Записи арендуются: next_attempt_at сдвигается на время аренды, счетчик попыток увеличивается.
+     * Параллельные диспетчеры (в том числе на других узлах) не получат одни и те же записи.
+     * @param channel канал доставки
+     * @param limit максимальный размер пачки
+     * @param leaseSeconds время аренды в секундах
+     * @return список арендованных записей
+     */
+    public List<OutboxMessage> claimBatch(String channel, int limit, int leaseSeconds) {
+        List<OutboxMessage> messages = new ArrayList<>();
+        String sql = "UPDATE notification_outbox SET next_attempt_at = ?, attempts = attempts + 1 " +
+                "WHERE id IN (" +
+                "SELECT id FROM notification_outbox " +
+                "WHERE channel = ? AND status = 'PENDING' AND next_attempt_at <= ? " +
+                "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED" +
+                ") RETURNING id, otp_id, channel, destination, operation_id, code, attempts, created_at";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            LocalDateTime now = LocalDateTime.now();
+            pstmt.setTimestamp(1, Timestamp.valueOf(now.plusSeconds(leaseSeconds)));
+            pstmt.setString(2, channel);
+            pstmt.setTimestamp(3, Timestamp.valueOf(now));
+            pstmt.setInt(4, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    OutboxMessage message = new OutboxMessage();
+                    message.setId(rs.getLong("id"));
+                    message.setOtpId(rs.getLong("otp_id"));
+                    message.setChannel(rs.getString("channel"));
+                    message.setDestination(rs.getString("destination"));
+                    message.setOperationId(rs.getString("operation_id"));
+                    message.setCode(rs.getString("code"));
+                    message.setAttempts(rs.getInt("attempts"));
+                    message.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+                    messages.add(message);
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при получении записей outbox для канала " + channel, e);
+        }
+        return messages;
+    }
+
+    /**
+     * Удаляет доставленные записи одним запросом
+     * @param ids идентификаторы доставленных записей
+     * @return true если удаление успешно
+     */
+    public boolean deleteDelivered(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return true;
+        }
+        String sql = "DELETE FROM notification_outbox WHERE id = ANY(?)";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            pstmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при удалении доставленных записей outbox", e);
+            return false;
+        }
+    }
+
+    /**
+     * Планирует повторную попытку доставки
+     * @param id идентификатор записи
+     * @param nextAttemptAt время следующей попытки
+     * @param error описание ошибки
+     * @return true если обновление успешно
+     */
+    public boolean scheduleRetry(Long id, LocalDateTime nextAttemptAt, String error) {
+        String sql = "UPDATE notification_outbox SET next_attempt_at = ?, last_error = ? WHERE id = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, Timestamp.valueOf(nextAttemptAt));
+            pstmt.setString(2, truncate(error));
+            pstmt.setLong(3, id);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при планировании повторной доставки", e);
+            return false;
+        }
+    }
+
+    /**
+     * Помечает запись как окончательно недоставленную (попытки исчерпаны)
+     * @param id идентификатор записи
+     * @param error описание ошибки
+     * @return true если обновление успешно
+     */
+    public boolean markFailed(Long id, String error) {
+        String sql = "UPDATE notification_outbox SET status = 'FAILED', last_error = ? WHERE id = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, truncate(error));
+            pstmt.setLong(2, id);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при пометке записи outbox как недоставленной", e);
+            return false;
+        }
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > 500 ? value.substring(0, 500) : value;
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Преобразование текущей строки ResultSet в объект.
+ * Мапперы создаются один раз для запроса и читают столбцы по номеру,
+ * поэтому порядок столбцов в SELECT должен совпадать с маппером.
+ * @param <T> тип объекта
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
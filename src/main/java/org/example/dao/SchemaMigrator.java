@@ -0,0 +1,379 @@
+package org.example.dao;
+
+import org.example.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Версионированные миграции схемы БД, выполняемые при запуске приложения.
+ * - примененные версии хранятся в таблице schema_migrations
+ * - если схема уже актуальна, узел проверяет это одним запросом и DDL не выполняет
+ * - иначе миграции применяются под advisory-блокировкой, поэтому одновременно
+ *   стартующие узлы не выполняют одну и ту же миграцию дважды
+ * - каждая миграция выполняется в своей транзакции вместе с записью версии; миграции,
+ *   которые нельзя выполнять в транзакции (CREATE INDEX CONCURRENTLY), помечаются
+ *   нетранзакционными: их запросы выполняются по одному и должны быть повторяемыми,
+ *   а недостроенные (INVALID) индексы прерванной попытки удаляются перед повтором
+ * - узел, ожидающий блокировку, не держит открытый запрос (pg_try_advisory_lock в цикле):
+ *   CREATE INDEX CONCURRENTLY ждет завершения всех транзакций со старыми снимками
+ * Новые изменения схемы добавляются в конец списка MIGRATIONS с очередной версией;
+ * уже примененные миграции не изменяются.
+ */
+public class SchemaMigrator {
+    private static final Logger logger = Logger.getLogger(SchemaMigrator.class.getName());
+
+    // Ключ advisory-блокировки миграций
+    private static final long LOCK_KEY = 0x6f74705f736368L;
+
+    // Интервал повторной попытки получить блокировку миграций
+    private static final long LOCK_POLL_MS = 1000;
+
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            // Исходная схема (ранее создавалась в конструкторах DAO)
+            new Migration(1, "Исходная схема",
+                    "CREATE TABLE IF NOT EXISTS users (" +
+                            "id SERIAL PRIMARY KEY, " +
+                            "username VARCHAR(50) NOT NULL UNIQUE, " +
+                            "password VARCHAR(100) NOT NULL, " +
+                            "role VARCHAR(10) NOT NULL, " +
+                            "email VARCHAR(100), " +
+                            "phone VARCHAR(20), " +
+                            "telegram_chat_id VARCHAR(50)" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS otps (" +
+                            "id SERIAL PRIMARY KEY, " +
+                            "user_id INT NOT NULL, " +
+                            "operation_id VARCHAR(100) NOT NULL, " +
+                            "code VARCHAR(10) NOT NULL, " +
+                            "created_at TIMESTAMP NOT NULL, " +
+                            "expires_at TIMESTAMP NOT NULL, " +
+                            "status VARCHAR(10) NOT NULL, " +
+                            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS otp_config (" +
+                            "id SERIAL PRIMARY KEY, " +
+                            "code_length INT NOT NULL, " +
+                            "lifetime_in_minutes INT NOT NULL" +
+                            ")",
+                    "INSERT INTO otp_config (code_length, lifetime_in_minutes) " +
+                            "SELECT 6, 5 WHERE NOT EXISTS (SELECT 1 FROM otp_config)",
+                    "CREATE TABLE IF NOT EXISTS notification_outbox (" +
+                            "id BIGSERIAL PRIMARY KEY, " +
+                            "otp_id BIGINT, " +
+                            "channel VARCHAR(20) NOT NULL, " +
+                            "destination VARCHAR(100) NOT NULL, " +
+                            "operation_id VARCHAR(100) NOT NULL, " +
+                            "code VARCHAR(10) NOT NULL, " +
+                            "status VARCHAR(10) NOT NULL, " +
+                            "attempts INT NOT NULL DEFAULT 0, " +
+                            "next_attempt_at TIMESTAMP NOT NULL, " +
+                            "last_error VARCHAR(500), " +
+                            "created_at TIMESTAMP NOT NULL" +
+                            ")",
+                    "CREATE INDEX IF NOT EXISTS idx_outbox_pending " +
+                            "ON notification_outbox (channel, next_attempt_at) WHERE status = 'PENDING'"),
+
+            // Индексы для поиска и проверки кода, истечения и выборки по пользователю.
+            // Строятся без блокировки записи в otps (CONCURRENTLY, вне транзакции)
+            Migration.nonTransactional(2, "Индексы таблицы otps",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_otps_operation_code ON otps (operation_id, code, id)",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_otps_active_expires ON otps (expires_at) " +
+                            "WHERE status = 'ACTIVE'",
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_otps_user_id ON otps (user_id)"),
+
+            // Подготовка otps к подключению секцией (без долгих блокировок записи):
+            // - уникальный индекс (id, created_at) для будущего первичного ключа строится CONCURRENTLY;
+            // - CHECK на created_at добавляется NOT VALID (кратко) и проверяется отдельно, VALIDATE
+            //   держит только SHARE UPDATE EXCLUSIVE, поэтому запись в otps не блокируется.
+            // Граница CHECK взята с запасом в сутки, чтобы строки не нарушали его до миграции 4
+            Migration.nonTransactional(3, "Подготовка otps к секционированию",
+                    "CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS otps_legacy_id_created_at_idx " +
+                            "ON otps (id, created_at)",
+                    "DO $$ " +
+                            "BEGIN " +
+                            "IF (SELECT relkind FROM pg_class WHERE oid = 'otps'::regclass) = 'p' " +
+                            "OR EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'otps_legacy_created_at_check') " +
+                            "THEN RETURN; END IF; " +
+                            "EXECUTE format('ALTER TABLE otps ADD CONSTRAINT otps_legacy_created_at_check " +
+                            "CHECK (created_at < %L) NOT VALID', " +
+                            "date_trunc('day', localtimestamp) + INTERVAL '2 days'); " +
+                            "END $$",
+                    "DO $$ " +
+                            "BEGIN " +
+                            "IF (SELECT relkind FROM pg_class WHERE oid = 'otps'::regclass) = 'p' THEN RETURN; END IF; " +
+                            "ALTER TABLE otps VALIDATE CONSTRAINT otps_legacy_created_at_check; " +
+                            "END $$"),
+
+            // Секционирование otps по created_at (по суткам, секции создает OtpPartitionMaintenance).
+            // Существующая таблица подключается секцией для всех строк до границы, не меньшей границы
+            // проверенного CHECK из миграции 3, поэтому ATTACH не сканирует таблицу; ее индексы
+            // с теми же определениями становятся секциями индексов родительской таблицы.
+            // Первичный ключ секционированной таблицы должен содержать ключ секционирования,
+            // у подключаемой таблицы он создается по готовому индексу из миграции 3
+            new Migration(4, "Секционирование otps по created_at",
+                    "DO $$ " +
+                            "DECLARE boundary TIMESTAMP := date_trunc('day', localtimestamp) + INTERVAL '2 days'; " +
+                            "BEGIN " +
+                            "IF (SELECT relkind FROM pg_class WHERE oid = 'otps'::regclass) = 'p' THEN RETURN; END IF; " +
+                            "ALTER TABLE otps DROP CONSTRAINT otps_pkey; " +
+                            "ALTER TABLE otps ADD CONSTRAINT otps_legacy_pkey " +
+                            "PRIMARY KEY USING INDEX otps_legacy_id_created_at_idx; " +
+                            "ALTER TABLE otps RENAME TO otps_legacy; " +
+                            "ALTER INDEX idx_otps_operation_code RENAME TO otps_legacy_operation_code_idx; " +
+                            "ALTER INDEX idx_otps_active_expires RENAME TO otps_legacy_active_expires_idx; " +
+                            "ALTER INDEX idx_otps_user_id RENAME TO otps_legacy_user_id_idx; " +
+                            "ALTER SEQUENCE otps_id_seq OWNED BY NONE; " +
+                            "CREATE TABLE otps (" +
+                            "id INT NOT NULL DEFAULT nextval('otps_id_seq'), " +
+                            "user_id INT NOT NULL, " +
+                            "operation_id VARCHAR(100) NOT NULL, " +
+                            "code VARCHAR(10) NOT NULL, " +
+                            "created_at TIMESTAMP NOT NULL, " +
+                            "expires_at TIMESTAMP NOT NULL, " +
+                            "status VARCHAR(10) NOT NULL, " +
+                            "PRIMARY KEY (id, created_at), " +
+                            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE" +
+                            ") PARTITION BY RANGE (created_at); " +
+                            "ALTER SEQUENCE otps_id_seq OWNED BY otps.id; " +
+                            "CREATE INDEX idx_otps_operation_code ON otps (operation_id, code, id); " +
+                            "CREATE INDEX idx_otps_active_expires ON otps (expires_at) WHERE status = 'ACTIVE'; " +
+                            "CREATE INDEX idx_otps_user_id ON otps (user_id); " +
+                            "EXECUTE format('ALTER TABLE otps ATTACH PARTITION otps_legacy " +
+                            "FOR VALUES FROM (MINVALUE) TO (%L)', boundary); " +
+                            // После подключения строки ограничены границей секции
+                            "ALTER TABLE otps_legacy DROP CONSTRAINT otps_legacy_created_at_check; " +
+                            // Страховочная секция для строк вне созданных секций (не должна заполняться)
+                            "CREATE TABLE otps_default PARTITION OF otps DEFAULT; " +
+                            "END $$"),
+
+            // Счетчики неудачных попыток проверки, общие для узлов (см. OtpAttemptLimiter).
+            // bucket - номер окна подсчета (epoch millis / длительность окна);
+            // attempt_key вмещает operation_id и имя пользователя
+            new Migration(5, "Счетчики попыток проверки OTP",
+                    "CREATE TABLE IF NOT EXISTS otp_attempts (" +
+                            "scope VARCHAR(10) NOT NULL, " +
+                            "attempt_key VARCHAR(100) NOT NULL, " +
+                            "bucket BIGINT NOT NULL, " +
+                            "failures INT NOT NULL, " +
+                            "updated_at TIMESTAMP NOT NULL, " +
+                            "PRIMARY KEY (scope, attempt_key, bucket)" +
+                            ")",
+                    "CREATE INDEX IF NOT EXISTS idx_otp_attempts_updated ON otp_attempts (updated_at)"),
+
+            // Секции otps, строки которых записаны в архив (см. OtpArchiver);
+            // по сроку хранения удаляются только они
+            new Migration(6, "Архивированные секции otps",
+                    "CREATE TABLE IF NOT EXISTS otp_archived_partitions (" +
+                            "partition_name VARCHAR(63) PRIMARY KEY, " +
+                            "row_count BIGINT NOT NULL, " +
+                            "archived_at TIMESTAMP NOT NULL" +
+                            ")")
+    ));
+
+    /**
+     * Приводит схему БД к последней версии
+     * @return true, если схема актуальна
+     */
+    public boolean migrate() {
+        int latest = MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            if (currentVersion(conn) >= latest) {
+                logger.info("Схема БД актуальна, версия " + latest);
+                return true;
+            }
+
+            if (!acquireLock(conn, latest)) {
+                logger.info("Схема БД обновлена другим узлом, версия " + latest);
+                return true;
+            }
+            try {
+                applyPending(conn);
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при миграции схемы БД", e);
+            return false;
+        }
+    }
+
+    /**
+     * Ожидает advisory-блокировку миграций, пока схема не обновлена другим узлом
+     * @return true, если блокировка получена; false, если схема уже актуальна
+     */
+    private boolean acquireLock(Connection conn, int latest) throws SQLException {
+        while (true) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    return true;
+                }
+            }
+            if (currentVersion(conn) >= latest) {
+                return false;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(LOCK_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Ожидание блокировки миграций прервано", e);
+            }
+        }
+    }
+
+    /**
+     * Последняя примененная версия или 0, если миграции еще не выполнялись
+     */
+    private int currentVersion(Connection conn) throws SQLException {
+        String sql = "SELECT CASE WHEN to_regclass('schema_migrations') IS NULL THEN 0 " +
+                "ELSE (SELECT COALESCE(MAX(version), 0) FROM schema_migrations) END";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Применяет недостающие миграции (вызывается под advisory-блокировкой)
+     */
+    private void applyPending(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "applied_at TIMESTAMP NOT NULL" +
+                    ")");
+        }
+
+        // Другой узел мог применить часть миграций, пока ожидалась блокировка
+        Set<Integer> applied = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_migrations")) {
+            while (rs.next()) {
+                applied.add(rs.getInt(1));
+            }
+        }
+
+        for (Migration migration : MIGRATIONS) {
+            if (applied.contains(migration.version)) {
+                continue;
+            }
+            if (!migration.transactional) {
+                applyNonTransactional(conn, migration);
+                continue;
+            }
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : migration.statements) {
+                    stmt.execute(sql);
+                }
+                recordVersion(conn, migration);
+                conn.commit();
+                logger.info("Применена миграция " + migration.version + ": " + migration.description);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Применяет нетранзакционную миграцию: запросы выполняются по одному в autocommit,
+     * версия записывается после успешного выполнения всех запросов
+     */
+    private void applyNonTransactional(Connection conn, Migration migration) throws SQLException {
+        dropInvalidIndexes(conn);
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : migration.statements) {
+                stmt.execute(sql);
+            }
+        }
+        recordVersion(conn, migration);
+        logger.info("Применена миграция " + migration.version + ": " + migration.description);
+    }
+
+    /**
+     * Удаляет недостроенные индексы, оставшиеся после прерванного CREATE INDEX CONCURRENTLY
+     * (иначе CREATE INDEX IF NOT EXISTS при повторе пропустил бы их)
+     */
+    private void dropInvalidIndexes(Connection conn) throws SQLException {
+        String sql = "SELECT format('%I.%I', n.nspname, c.relname) FROM pg_index i " +
+                "JOIN pg_class c ON c.oid = i.indexrelid " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "WHERE NOT i.indisvalid AND n.nspname = current_schema()";
+
+        List<String> invalid = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                invalid.add(rs.getString(1));
+            }
+        }
+        for (String index : invalid) {
+            logger.warning("Удаление недостроенного индекса " + index);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+            }
+        }
+    }
+
+    private void recordVersion(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement record = conn.prepareStatement(
+                "INSERT INTO schema_migrations (version, description, applied_at) VALUES (?, ?, ?)")) {
+            record.setInt(1, migration.version);
+            record.setString(2, migration.description);
+            record.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            record.executeUpdate();
+        }
+    }
+
+    /**
+     * Миграция схемы: версия, описание и DDL-запросы
+     */
+    private static final class Migration {
+        final int version;
+        final String description;
+        final String[] statements;
+        // false - запросы выполняются вне транзакции (CREATE INDEX CONCURRENTLY)
+        final boolean transactional;
+
+        Migration(int version, String description, String... statements) {
+            this(version, description, true, statements);
+        }
+
+        private Migration(int version, String description, boolean transactional, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+            this.transactional = transactional;
+        }
+
+        /**
+         * Миграция, запросы которой выполняются вне транзакции; каждый запрос должен быть повторяемым
+         */
+        static Migration nonTransactional(int version, String description, String... statements) {
+            return new Migration(version, description, false, statements);
+        }
+    }
+}
@@ -17,38 +17,20 @@ import java.util.logging.Logger;
 public class UserDao {
     private static final Logger logger = Logger.getLogger(UserDao.class.getName());
 
-    public UserDao() {
-        initializeTable();
-    }
-
-    /**
-     * Создает таблицу users при инициализации DAO.
-     * Структура таблицы:
-     * - id: первичный ключ
-     * - username: уникальное имя пользователя
-     * - password: хеш пароля
-     * - role: роль пользователя (ADMIN/USER)
-     * - email, phone, telegram_chat_id: дополнительные данные
-     */
-    private void initializeTable() {
-        String sql = "CREATE TABLE IF NOT EXISTS users (" +
-                "id SERIAL PRIMARY KEY, " +
-                "username VARCHAR(50) NOT NULL UNIQUE, " +
-                "password VARCHAR(100) NOT NULL, " +
-                "role VARCHAR(10) NOT NULL, " +
-                "email VARCHAR(100), " +
-                "phone VARCHAR(20), " +
-                "telegram_chat_id VARCHAR(50)" +
-                ")";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-            logger.info("Таблица users инициализирована");
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Ошибка при инициализации таблицы users", e);
-        }
-    }
+    // Столбцы пользователя в порядке, ожидаемом USER_MAPPER
+    private static final String USER_COLUMNS = "id, username, password, role, email, phone, telegram_chat_id";
+
+    private static final RowMapper<User> USER_MAPPER = rs -> {
+        User user = new User();
+        user.setId(rs.getLong(1));
+        user.setUsername(rs.getString(2));
+        user.setPassword(rs.getString(3));
+        user.setRole(rs.getString(4));
+        user.setEmail(rs.getString(5));
+        user.setPhone(rs.getString(6));
+        user.setTelegramChatId(rs.getString(7));
+        return user;
+    };
 
     /**
      * Сохраняет пользователя в базу данных
@@ -90,29 +72,14 @@ public class UserDao {
      * @return Optional с найденным пользователем или пустой
      */
     public Optional<User> findByUsername(String username) {
-        String sql = "SELECT id, username, password, role, email, phone, telegram_chat_id FROM users WHERE username = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE username = ?";
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, username);
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    User user = new User();
-                    user.setId(rs.getLong("id"));
-                    user.setUsername(rs.getString("username"));
-                    user.setPassword(rs.getString("password"));
-                    user.setRole(rs.getString("role"));
-                    user.setEmail(rs.getString("email"));
-                    user.setPhone(rs.getString("phone"));
-                    user.setTelegramChatId(rs.getString("telegram_chat_id"));
-                    return Optional.of(user);
-                }
-            }
+        try {
+            return Jdbc.queryOne(sql, pstmt -> pstmt.setString(1, username), USER_MAPPER);
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Ошибка при поиске пользователя по имени", e);
+            return Optional.empty();
         }
-        return Optional.empty();
     }
 
     /**
@@ -121,29 +88,14 @@ public class UserDao {
      * @return Optional с найденным пользователем или пустой
      */
     public Optional<User> findById(Long id) {
-        String sql = "SELECT id, username, password, role, email, phone, telegram_chat_id FROM users WHERE id = ?";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE id = ?";
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    User user = new User();
-                    user.setId(rs.getLong("id"));
-                    user.setUsername(rs.getString("username"));
-                    user.setPassword(rs.getString("password"));
-                    user.setRole(rs.getString("role"));
-                    user.setEmail(rs.getString("email"));
-                    user.setPhone(rs.getString("phone"));
-                    user.setTelegramChatId(rs.getString("telegram_chat_id"));
-                    return Optional.of(user);
-                }
-            }
+        try {
+            return Jdbc.queryOne(sql, pstmt -> pstmt.setLong(1, id), USER_MAPPER);
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Ошибка при поиске пользователя по ID", e);
+            return Optional.empty();
         }
-        return Optional.empty();
     }
 
     /**
@@ -151,27 +103,14 @@ public class UserDao {
      * @return список обычных пользователей
      */
     public List<User> findAllNonAdmins() {
-        List<User> users = new ArrayList<>();
-        String sql = "SELECT id, username, password, role, email, phone, telegram_chat_id FROM users WHERE role <> 'ADMIN'";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE role <> 'ADMIN'";
 
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                User user = new User();
-                user.setId(rs.getLong("id"));
-                user.setUsername(rs.getString("username"));
-                user.setPassword(rs.getString("password"));
-                user.setRole(rs.getString("role"));
-                user.setEmail(rs.getString("email"));
-                user.setPhone(rs.getString("phone"));
-                user.setTelegramChatId(rs.getString("telegram_chat_id"));
-                users.add(user);
-            }
+        try {
+            return Jdbc.queryList(sql, Jdbc.NO_PARAMS, USER_MAPPER);
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Ошибка при получении списка пользователей", e);
+            return new ArrayList<>();
         }
-        return users;
     }
 
     /**
@@ -201,8 +140,8 @@ public class UserDao {
         String sql = "SELECT COUNT(*) FROM users WHERE role = 'ADMIN'";
 
         try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
             if (rs.next()) {
                 return rs.getInt(1) > 0;
             }
@@ -0,0 +1,46 @@
+package org.example.model;
+
+/**
+ * Неизменяемые данные аутентифицированного пользователя, извлеченные из проверенного JWT-токена.
+ */
+public final class AuthPrincipal {
+    // Имя пользователя (subject токена)
+    private final String username;
+
+    // Роль пользователя (ADMIN/USER)
+    private final String role;
+
+    // Момент истечения токена (epoch millis)
+    private final long expiresAtMillis;
+
+    /**
+     * @param username имя пользователя
+     * @param role роль пользователя
+     * @param expiresAtMillis момент истечения токена (epoch millis)
+     */
+    public AuthPrincipal(String username, String role, long expiresAtMillis) {
+        this.username = username;
+        this.role = role;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    /**
+     * Проверяет, истек ли токен к указанному моменту
+     * @param nowMillis текущее время (epoch millis)
+     */
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+}
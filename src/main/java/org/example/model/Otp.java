@@ -7,6 +7,10 @@ import java.time.LocalDateTime;
  * Содержит всю информацию о сгенерированном OTP-коде.
  */
 public class Otp {
+    // Ширина столбцов otps.operation_id и otps.code (ограничения длины полей запросов)
+    public static final int MAX_OPERATION_ID_LENGTH = 100;
+    public static final int MAX_CODE_LENGTH = 10;
+
     // Уникальный идентификатор OTP-кода в базе данных
     private Long id;
 
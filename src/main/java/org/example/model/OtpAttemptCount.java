@@ -0,0 +1,41 @@
+package org.example.model;
+
+/**
+ * Число неудачных попыток проверки OTP для ключа (операция или пользователь) в одном окне подсчета
+ */
+public class OtpAttemptCount {
+    // Область счетчика (OPERATION/PRINCIPAL)
+    private final String scope;
+
+    // operationId или имя пользователя
+    private final String key;
+
+    // Номер окна подсчета (epoch millis / длительность окна)
+    private final long bucket;
+
+    // Число неудачных попыток (для записи в БД - прирост)
+    private final int failures;
+
+    public OtpAttemptCount(String scope, String key, long bucket, int failures) {
+        this.scope = scope;
+        this.key = key;
+        this.bucket = bucket;
+        this.failures = failures;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getBucket() {
+        return bucket;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+}
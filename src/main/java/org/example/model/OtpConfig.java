@@ -5,6 +5,14 @@ package org.example.model;
  * Используется для хранения и передачи параметров генерации одноразовых паролей.
  */
 public class OtpConfig {
+    // Допустимая длина кода (не больше ширины столбца otps.code)
+    public static final int MIN_CODE_LENGTH = 6;
+    public static final int MAX_CODE_LENGTH = 8;
+
+    // Допустимое время жизни кода в минутах (на нем основано окно поиска OtpDao.LOOKUP_WINDOW)
+    public static final int MIN_LIFETIME_MINUTES = 1;
+    public static final int MAX_LIFETIME_MINUTES = 15;
+
     // Уникальный идентификатор конфигурации (из базы данных)
     private Long id;
 
@@ -0,0 +1,66 @@
+package org.example.model;
+
+/**
+ * Элемент пакетной генерации OTP.
+ * Содержит параметры генерации и ее результат: созданный OTP или причину отказа.
+ */
+public class OtpGenerationItem {
+    // Идентификатор операции
+    private final String operationId;
+
+    // Канал отправки (email/sms/telegram/file)
+    private final String notificationType;
+
+    // Созданный OTP (null, если генерация не выполнена)
+    private Otp otp;
+
+    // Причина отказа (null при успехе)
+    private String error;
+
+    // Через сколько секунд повторить при превышении лимита частоты (0 - лимит не превышен)
+    private long retryAfterSeconds;
+
+    public OtpGenerationItem(String operationId, String notificationType) {
+        this.operationId = operationId;
+        this.notificationType = notificationType;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public String getNotificationType() {
+        return notificationType;
+    }
+
+    public Otp getOtp() {
+        return otp;
+    }
+
+    public void setOtp(Otp otp) {
+        this.otp = otp;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Проверяет, что OTP для элемента создан
+     */
+    public boolean isSuccess() {
+        return otp != null;
+    }
+}
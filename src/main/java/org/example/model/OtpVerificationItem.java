@@ -0,0 +1,36 @@
+package org.example.model;
+
+/**
+ * Элемент пакетной проверки OTP: введенный код, операция и результат проверки
+ */
+public class OtpVerificationItem {
+    // Введенный код
+    private final String code;
+
+    // Идентификатор операции
+    private final String operationId;
+
+    // Результат проверки (null, пока проверка не выполнена)
+    private OtpVerificationResult result;
+
+    public OtpVerificationItem(String code, String operationId) {
+        this.code = code;
+        this.operationId = operationId;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public OtpVerificationResult getResult() {
+        return result;
+    }
+
+    public void setResult(OtpVerificationResult result) {
+        this.result = result;
+    }
+}
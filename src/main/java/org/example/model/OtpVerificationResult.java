@@ -0,0 +1,32 @@
+package org.example.model;
+
+/**
+ * Результат проверки OTP-кода.
+ * Определяется одним атомарным запросом к БД (см. OtpDao.verifyAndMarkUsed).
+ */
+public enum OtpVerificationResult {
+    // Код действителен и помечен как использованный
+    USED,
+
+    // Срок действия кода истёк (статус переведен в EXPIRED)
+    EXPIRED,
+
+    // Код для указанной операции не найден
+    NOT_FOUND,
+
+    // Код уже был использован ранее
+    ALREADY_USED,
+
+    // Превышено число неудачных попыток проверки, код не проверялся
+    TOO_MANY_ATTEMPTS,
+
+    // Ошибка доступа к БД, результат неизвестен
+    ERROR;
+
+    /**
+     * Проверяет, что верификация прошла успешно
+     */
+    public boolean isSuccess() {
+        return this == USED;
+    }
+}
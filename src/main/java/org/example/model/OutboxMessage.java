@@ -0,0 +1,115 @@
+package org.example.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись исходящего уведомления (transactional outbox).
+ * Создается в одной транзакции с OTP-кодом и доставляется фоновым диспетчером.
+ */
+public class OutboxMessage {
+    // Уникальный идентификатор записи
+    private Long id;
+
+    // Идентификатор OTP-кода, к которому относится уведомление
+    private Long otpId;
+
+    // Канал доставки: email, sms, telegram, file
+    private String channel;
+
+    // Адрес получателя в канале (email, телефон, chat_id, ID пользователя для файла)
+    private String destination;
+
+    // Идентификатор операции
+    private String operationId;
+
+    // Отправляемый OTP-код
+    private String code;
+
+    // Количество выполненных попыток доставки
+    private int attempts;
+
+    // Время создания записи
+    private LocalDateTime createdAt;
+
+    /**
+     * Конструктор без параметров
+     */
+    public OutboxMessage() {
+    }
+
+    /**
+     * Конструктор для новой записи
+     */
+    public OutboxMessage(String channel, String destination, String operationId, String code) {
+        this.channel = channel;
+        this.destination = destination;
+        this.operationId = operationId;
+        this.code = code;
+    }
+
+    // Геттеры и сеттеры для всех полей
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getOtpId() {
+        return otpId;
+    }
+
+    public void setOtpId(Long otpId) {
+        this.otpId = otpId;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public void setOperationId(String operationId) {
+        this.operationId = operationId;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -5,6 +5,12 @@ package org.example.model;
  * Используется для хранения и передачи информации о пользователе.
  */
 public class User {
+    // Ширина столбцов таблицы users (ограничения длины полей запросов)
+    public static final int MAX_USERNAME_LENGTH = 50;
+    public static final int MAX_EMAIL_LENGTH = 100;
+    public static final int MAX_PHONE_LENGTH = 20;
+    public static final int MAX_TELEGRAM_CHAT_ID_LENGTH = 50;
+
     // Уникальный идентификатор пользователя (из базы данных)
     private Long id;
 
@@ -0,0 +1,35 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+
+/**
+ * HTTP-сервер приложения.
+ * Контроллеры и фильтры используют API com.sun.net.httpserver (HttpHandler, Filter, HttpExchange),
+ * поэтому одни и те же обработчики работают с любой реализацией:
+ * - JdkApiServer - встроенный com.sun.net.httpserver.HttpServer
+ * - NioApiServer - неблокирующий сервер на Selector
+ */
+public interface ApiServer {
+
+    /**
+     * Регистрирует обработчик для всех путей, начинающихся с path
+     * @param path префикс пути
+     * @param handler обработчик
+     * @param filters фильтры, выполняемые перед обработчиком
+     */
+    void createContext(String path, HttpHandler handler, Filter... filters);
+
+    /**
+     * Запуск приема соединений
+     */
+    void start() throws IOException;
+
+    /**
+     * Остановка сервера
+     * @param delaySeconds максимальное ожидание завершения текущих запросов
+     */
+    void stop(int delaySeconds);
+}
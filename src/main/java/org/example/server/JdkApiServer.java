@@ -0,0 +1,84 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Реализация на встроенном com.sun.net.httpserver.HttpServer.
+ * Если пул обработчиков отклоняет запрос (очередь переполнена), HttpServer не закрывает соединение,
+ * поэтому такой запрос выполняется в потоке диспетчера, но вместо обработчика
+ * сразу получает ответ 503.
+ */
+public class JdkApiServer implements ApiServer {
+    private static final ThreadLocal<Boolean> overloaded = new ThreadLocal<>();
+
+    private final HttpServer server;
+
+    /**
+     * @param address адрес и порт
+     * @param backlog очередь входящих соединений (0 - по умолчанию системы)
+     * @param executor пул обработчиков запросов
+     */
+    public JdkApiServer(InetSocketAddress address, int backlog, Executor executor) throws IOException {
+        this.server = HttpServer.create(address, backlog);
+        this.server.setExecutor(task -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                overloaded.set(Boolean.TRUE);
+                try {
+                    task.run();
+                } finally {
+                    overloaded.remove();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void createContext(String path, HttpHandler handler, Filter... filters) {
+        HttpContext context = server.createContext(path, handler);
+        context.getFilters().add(new OverloadFilter());
+        context.getFilters().addAll(Arrays.asList(filters));
+    }
+
+    @Override
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+    }
+
+    /**
+     * Отвечает 503 на запрос, отклоненный пулом обработчиков
+     */
+    private static final class OverloadFilter extends Filter {
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (overloaded.get() == null) {
+                chain.doFilter(exchange);
+                return;
+            }
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        }
+
+        @Override
+        public String description() {
+            return "Отклонение запросов при переполнении пула обработчиков";
+        }
+    }
+}
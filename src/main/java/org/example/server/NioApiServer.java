@@ -0,0 +1,206 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Неблокирующий HTTP/1.1 сервер на java.nio Selector.
+ * - несколько потоков ввода-вывода, каждый обслуживает множество keep-alive соединений
+ * - чтение и запись через пул direct-буферов
+ * - конвейерные запросы (pipelining) обрабатываются по очереди в порядке поступления
+ * - ограничение размера заголовков и тела запроса (431/413)
+ * Запросы обрабатываются существующими HttpHandler и Filter в пуле обработчиков,
+ * потоки ввода-вывода блокирующих операций не выполняют.
+ */
+public class NioApiServer implements ApiServer {
+    private static final Logger logger = Logger.getLogger(NioApiServer.class.getName());
+
+    private final InetSocketAddress address;
+    private final int backlog;
+    private final Executor executor;
+    private final int ioThreads;
+    private final int maxHeaderBytes;
+    private final int maxBodyBytes;
+    private final long idleTimeoutMs;
+    private final DirectBufferPool bufferPool;
+
+    private final List<NioHttpContext> contexts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger activeExchanges = new AtomicInteger();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private NioIoLoop[] loops;
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * @param address адрес и порт
+     * @param backlog очередь входящих соединений (0 - по умолчанию системы)
+     * @param executor пул обработчиков запросов
+     * @param ioThreads число потоков ввода-вывода
+     * @param bufferBytes размер direct-буфера
+     * @param maxPooledBuffers максимальное число буферов в пуле
+     * @param maxHeaderBytes максимальный размер строки запроса и заголовков
+     * @param maxBodyBytes максимальный размер тела запроса
+     * @param idleTimeoutMs таймаут простоя keep-alive соединения
+     */
+    public NioApiServer(InetSocketAddress address, int backlog, Executor executor, int ioThreads,
+                        int bufferBytes, int maxPooledBuffers, int maxHeaderBytes, int maxBodyBytes,
+                        long idleTimeoutMs) {
+        this.address = address;
+        this.backlog = backlog;
+        this.executor = executor;
+        this.ioThreads = ioThreads;
+        this.maxHeaderBytes = maxHeaderBytes;
+        this.maxBodyBytes = maxBodyBytes;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.bufferPool = new DirectBufferPool(bufferBytes, maxPooledBuffers);
+    }
+
+    @Override
+    public void createContext(String path, HttpHandler handler, Filter... filters) {
+        NioHttpContext context = new NioHttpContext(path, handler);
+        context.getFilters().addAll(Arrays.asList(filters));
+        contexts.add(context);
+    }
+
+    @Override
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, backlog);
+        serverChannel.configureBlocking(false);
+
+        loops = new NioIoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new NioIoLoop(this, "http-nio-" + i);
+        }
+        loops[0].registerAcceptor(serverChannel);
+        for (NioIoLoop loop : loops) {
+            loop.start();
+        }
+        logger.info("Неблокирующий HTTP-сервер запущен, потоков ввода-вывода: " + ioThreads);
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ошибка закрытия серверного сокета", e);
+        }
+        // Ожидание завершения текущих запросов
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(delaySeconds);
+        while (activeExchanges.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (NioIoLoop loop : loops) {
+            loop.stop();
+        }
+    }
+
+    /**
+     * Принимает новые соединения и распределяет их по потокам ввода-вывода
+     */
+    void accept(ServerSocketChannel channel) {
+        SocketChannel client;
+        try {
+            while ((client = channel.accept()) != null) {
+                NioIoLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                SocketChannel accepted = client;
+                loop.execute(() -> loop.register(accepted));
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ошибка приема соединения", e);
+        }
+    }
+
+    /**
+     * Передает разобранный запрос обработчику соответствующего контекста
+     */
+    void dispatch(NioConnection connection, String method, URI uri, String protocol,
+                  Headers headers, byte[] body, boolean keepAlive) {
+        NioHttpContext context = findContext(uri.getPath());
+        if (context == null) {
+            connection.sendError(404, "Не найдено");
+            return;
+        }
+        NioHttpExchange exchange = new NioHttpExchange(connection, context, method, uri, protocol,
+                headers, body, keepAlive);
+        activeExchanges.incrementAndGet();
+        try {
+            executor.execute(() -> handle(context, exchange));
+        } catch (RejectedExecutionException e) {
+            activeExchanges.decrementAndGet();
+            exchange.failIfNotStarted(503);
+            exchange.close();
+        }
+    }
+
+    private void handle(NioHttpContext context, NioHttpExchange exchange) {
+        try {
+            new Filter.Chain(context.getFilters(), context.getHandler()).doFilter(exchange);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Ошибка при обработке запроса " + exchange.getRequestURI(), e);
+            exchange.failIfNotStarted(500);
+        } finally {
+            // Обработчик мог не закрыть обмен - ответ все равно должен быть отправлен
+            exchange.close();
+            activeExchanges.decrementAndGet();
+        }
+    }
+
+    /**
+     * Контекст с самым длинным совпадающим префиксом пути (как в com.sun.net.httpserver)
+     */
+    private NioHttpContext findContext(String path) {
+        NioHttpContext best = null;
+        if (path == null) {
+            return null;
+        }
+        for (NioHttpContext context : contexts) {
+            if (path.startsWith(context.getPath())
+                    && (best == null || context.getPath().length() > best.getPath().length())) {
+                best = context;
+            }
+        }
+        return best;
+    }
+
+    DirectBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    int getMaxHeaderBytes() {
+        return maxHeaderBytes;
+    }
+
+    int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    int getMaxRequestBytes() {
+        return maxHeaderBytes + 4 + maxBodyBytes;
+    }
+
+    long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+}
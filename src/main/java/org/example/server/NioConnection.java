@@ -0,0 +1,303 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Headers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Состояние одного соединения неблокирующего сервера.
+ * Все методы, кроме complete(), вызываются только потоком ввода-вывода, обслуживающим соединение.
+ * Запросы соединения обрабатываются строго по очереди: пока ответ на текущий запрос не записан,
+ * чтение приостанавливается, а уже полученные следующие запросы (pipelining) ждут в буфере.
+ */
+final class NioConnection {
+    private static final Logger logger = Logger.getLogger(NioConnection.class.getName());
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final NioApiServer server;
+    private final NioIoLoop loop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final InetSocketAddress remoteAddress;
+    private final InetSocketAddress localAddress;
+
+    // Принятые, но еще не разобранные байты
+    private byte[] input = new byte[1024];
+    private int inputLength;
+
+    // Ответ, который записывается в сокет
+    private byte[] output;
+    private int outputOffset;
+    private boolean closeAfterWrite;
+
+    private boolean requestInFlight;
+    private boolean continueSent;
+    private boolean closed;
+    private long lastActivityMs = System.currentTimeMillis();
+
+    NioConnection(NioApiServer server, NioIoLoop loop, SocketChannel channel, SelectionKey key) throws IOException {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    /**
+     * Соединение без активного запроса дольше таймаута простоя
+     */
+    boolean isIdle(long now, long idleTimeoutMs) {
+        return !requestInFlight && output == null && now - lastActivityMs > idleTimeoutMs;
+    }
+
+    /**
+     * Чтение доступных данных из сокета и разбор запроса
+     */
+    void onReadable() {
+        DirectBufferPool pool = server.getBufferPool();
+        ByteBuffer buffer = pool.acquire();
+        try {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            buffer.flip();
+            // Полные запросы из буфера уже разобраны, значит незавершенный запрос превысил лимит
+            if (inputLength >= server.getMaxRequestBytes()) {
+                sendError(413, "Слишком большой запрос");
+                return;
+            }
+            ensureInputCapacity(inputLength + buffer.remaining());
+            int count = buffer.remaining();
+            buffer.get(input, inputLength, count);
+            inputLength += count;
+        } catch (IOException e) {
+            close();
+            return;
+        } finally {
+            pool.release(buffer);
+        }
+        lastActivityMs = System.currentTimeMillis();
+        if (!requestInFlight) {
+            processInput();
+        }
+    }
+
+    /**
+     * Продолжение записи ответа, когда сокет снова готов к записи
+     */
+    void onWritable() {
+        writeOutput();
+    }
+
+    /**
+     * Вызывается потоком обработчика, когда ответ сформирован
+     */
+    void complete(byte[] response, boolean keepAlive) {
+        loop.execute(() -> startWrite(response, !keepAlive));
+    }
+
+    /**
+     * Разбирает очередной запрос из буфера и передает его серверу
+     */
+    private void processInput() {
+        int headerEnd = indexOfHeaderEnd();
+        if (headerEnd < 0) {
+            if (inputLength > server.getMaxHeaderBytes()) {
+                sendError(431, "Слишком большие заголовки запроса");
+            }
+            return;
+        }
+        if (headerEnd > server.getMaxHeaderBytes()) {
+            sendError(431, "Слишком большие заголовки запроса");
+            return;
+        }
+
+        String[] lines = new String(input, 0, headerEnd, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            sendError(400, "Некорректная строка запроса");
+            return;
+        }
+        Headers headers = new Headers();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                sendError(400, "Некорректный заголовок запроса");
+                return;
+            }
+            headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+        }
+
+        if (headers.containsKey("Transfer-Encoding")) {
+            sendError(501, "Transfer-Encoding не поддерживается");
+            return;
+        }
+        long contentLength;
+        try {
+            String value = headers.getFirst("Content-Length");
+            contentLength = value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            sendError(400, "Некорректный Content-Length");
+            return;
+        }
+        if (contentLength < 0 || contentLength > server.getMaxBodyBytes()) {
+            sendError(413, "Слишком большое тело запроса");
+            return;
+        }
+
+        int bodyStart = headerEnd + 4;
+        int requestEnd = bodyStart + (int) contentLength;
+        if (inputLength < requestEnd) {
+            if (!continueSent && "100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+                continueSent = true;
+                writeInterim(CONTINUE);
+            }
+            return;
+        }
+
+        URI uri;
+        try {
+            uri = URI.create(requestLine[1]);
+        } catch (IllegalArgumentException e) {
+            sendError(400, "Некорректный URI запроса");
+            return;
+        }
+        byte[] body = Arrays.copyOfRange(input, bodyStart, requestEnd);
+        System.arraycopy(input, requestEnd, input, 0, inputLength - requestEnd);
+        inputLength -= requestEnd;
+        continueSent = false;
+
+        String protocol = requestLine[2];
+        String connectionHeader = headers.getFirst("Connection");
+        boolean keepAlive = "HTTP/1.1".equals(protocol)
+                ? !"close".equalsIgnoreCase(connectionHeader)
+                : "keep-alive".equalsIgnoreCase(connectionHeader);
+
+        requestInFlight = true;
+        key.interestOps(0);
+        server.dispatch(this, requestLine[0], uri, protocol, headers, body, keepAlive);
+    }
+
+    /**
+     * Ответ с ошибкой разбора запроса; соединение закрывается после записи
+     */
+    void sendError(int code, String message) {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        byte[] head = ("HTTP/1.1 " + code + " " + NioHttpExchange.reasonPhrase(code) + "\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] response = Arrays.copyOf(head, head.length + body.length);
+        System.arraycopy(body, 0, response, head.length, body.length);
+        requestInFlight = true;
+        startWrite(response, true);
+    }
+
+    private void startWrite(byte[] response, boolean close) {
+        if (closed) {
+            return;
+        }
+        output = response;
+        outputOffset = 0;
+        closeAfterWrite = close;
+        writeOutput();
+    }
+
+    /**
+     * Записывает ответ через direct-буфер из пула; при неполной записи ждет готовности сокета
+     */
+    private void writeOutput() {
+        DirectBufferPool pool = server.getBufferPool();
+        try {
+            while (outputOffset < output.length) {
+                ByteBuffer buffer = pool.acquire();
+                try {
+                    int chunk = Math.min(buffer.remaining(), output.length - outputOffset);
+                    buffer.put(output, outputOffset, chunk);
+                    buffer.flip();
+                    int written = channel.write(buffer);
+                    outputOffset += written;
+                    if (written < chunk) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                } finally {
+                    pool.release(buffer);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+
+        output = null;
+        lastActivityMs = System.currentTimeMillis();
+        if (closeAfterWrite) {
+            close();
+            return;
+        }
+        requestInFlight = false;
+        key.interestOps(SelectionKey.OP_READ);
+        // В буфере может быть следующий запрос (pipelining)
+        processInput();
+    }
+
+    /**
+     * Промежуточный ответ (100 Continue); короткий, поэтому пишется без ожидания готовности сокета
+     */
+    private void writeInterim(byte[] response) {
+        try {
+            channel.write(ByteBuffer.wrap(response));
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Ошибка закрытия соединения", e);
+        }
+    }
+
+    private int indexOfHeaderEnd() {
+        for (int i = 0; i + 3 < inputLength; i++) {
+            if (input[i] == '\r' && input[i + 1] == '\n' && input[i + 2] == '\r' && input[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureInputCapacity(int required) {
+        if (required > input.length) {
+            input = Arrays.copyOf(input, Math.max(required, input.length * 2));
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Запрос неблокирующего сервера в виде HttpExchange, чтобы его обрабатывали существующие контроллеры.
+ * Тело запроса уже прочитано целиком, тело ответа накапливается в памяти
+ * и при закрытии обмена передается соединению одним блоком вместе с заголовками.
+ */
+final class NioHttpExchange extends HttpExchange {
+    private final NioConnection connection;
+    private final NioHttpContext context;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final boolean keepAlive;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final ResponseBody responseBody = new ResponseBody();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private InputStream requestBody;
+    private OutputStream userResponseBody;
+    private volatile int responseCode = -1;
+
+    NioHttpExchange(NioConnection connection, NioHttpContext context, String method, URI uri,
+                    String protocol, Headers requestHeaders, byte[] body, boolean keepAlive) {
+        this.connection = connection;
+        this.context = context;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = new ByteArrayInputStream(body);
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    @Override
+    public void close() {
+        finish();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return userResponseBody != null ? userResponseBody : responseBody;
+    }
+
+    /**
+     * Длина тела всегда вычисляется по фактически записанным данным,
+     * поэтому значение responseLength используется только как признак пустого ответа (-1)
+     */
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("Заголовки ответа уже отправлены");
+        }
+        responseCode = rCode;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestBody = i;
+        }
+        if (o != null) {
+            userResponseBody = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    /**
+     * Отвечает ошибкой, если обработчик не успел отправить ответ
+     */
+    void failIfNotStarted(int code) {
+        if (responseCode == -1 && !finished.get()) {
+            responseCode = code;
+            responseBody.reset();
+        }
+    }
+
+    /**
+     * Формирует ответ и передает его соединению (один раз)
+     */
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        if (responseCode == -1) {
+            responseCode = 500;
+            responseBody.reset();
+        }
+        connection.complete(encode(), keepAlive);
+    }
+
+    private byte[] encode() {
+        int bodyLength = responseBody.size();
+        StringBuilder head = new StringBuilder(128);
+        head.append("HTTP/1.1 ").append(responseCode).append(' ').append(reasonPhrase(responseCode)).append("\r\n");
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            if ("Content-Length".equalsIgnoreCase(header.getKey())
+                    || "Connection".equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        head.append("Content-Length: ").append(bodyLength).append("\r\n");
+        if (!keepAlive) {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] response = new byte[headBytes.length + bodyLength];
+        System.arraycopy(headBytes, 0, response, 0, headBytes.length);
+        responseBody.copyTo(response, headBytes.length);
+        return response;
+    }
+
+    static String reasonPhrase(int code) {
+        switch (code) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 204: return "No Content";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 413: return "Payload Too Large";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "Status";
+        }
+    }
+
+    /**
+     * Буфер тела ответа. Закрытие потока завершает обмен, как и в com.sun.net.httpserver.
+     */
+    private final class ResponseBody extends ByteArrayOutputStream {
+        ResponseBody() {
+            super(256);
+        }
+
+        void copyTo(byte[] target, int offset) {
+            System.arraycopy(buf, 0, target, offset, count);
+        }
+
+        @Override
+        public void close() {
+            finish();
+        }
+    }
+}
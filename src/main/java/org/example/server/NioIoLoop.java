@@ -0,0 +1,165 @@
+package org.example.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Поток ввода-вывода неблокирующего сервера: один Selector обслуживает множество соединений.
+ * Задачи других потоков (регистрация нового соединения, запись готового ответа)
+ * передаются через очередь и выполняются в этом потоке.
+ */
+final class NioIoLoop implements Runnable {
+    private static final Logger logger = Logger.getLogger(NioIoLoop.class.getName());
+    // Период проверки простаивающих соединений
+    private static final long IDLE_CHECK_INTERVAL_MS = 1000;
+
+    private final NioApiServer server;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long lastIdleCheckMs = System.currentTimeMillis();
+
+    NioIoLoop(NioApiServer server, String name) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Остановка потока и закрытие всех его соединений
+     */
+    void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Выполняет задачу в потоке ввода-вывода
+     */
+    void execute(Runnable task) {
+        tasks.offer(task);
+        selector.wakeup();
+    }
+
+    void registerAcceptor(ServerSocketChannel serverChannel) throws IOException {
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Регистрирует принятое соединение (вызывается в потоке этого цикла)
+     */
+    void register(SocketChannel channel) {
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new NioConnection(server, this, channel, key));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Не удалось зарегистрировать соединение", e);
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(IDLE_CHECK_INTERVAL_MS);
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+                closeIdleConnections();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Ошибка в потоке ввода-вывода HTTP-сервера", e);
+            }
+        }
+        closeAll();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (CancelledKeyException e) {
+                // Соединение закрыто до выполнения задачи
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Ошибка задачи потока ввода-вывода", e);
+            }
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                server.accept((ServerSocketChannel) key.channel());
+                return;
+            }
+            NioConnection connection = (NioConnection) key.attachment();
+            if (key.isWritable()) {
+                connection.onWritable();
+            } else if (key.isReadable()) {
+                connection.onReadable();
+            }
+        } catch (CancelledKeyException e) {
+            // Соединение закрыто во время обработки
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheckMs < IDLE_CHECK_INTERVAL_MS) {
+            return;
+        }
+        lastIdleCheckMs = now;
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioConnection
+                    && ((NioConnection) attachment).isIdle(now, server.getIdleTimeoutMs())) {
+                ((NioConnection) attachment).close();
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioConnection) {
+                ((NioConnection) key.attachment()).close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Ошибка закрытия Selector", e);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package org.example.service;
+
+import org.example.dao.OtpAttemptDao;
+import org.example.dao.OtpDao;
+import org.example.model.OtpAttemptCount;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Защита от подбора OTP-кодов: счетчики неудачных попыток проверки по операции и по пользователю.
+ * - счетчики хранятся в наборе сегментов (lock striping) фиксированного размера,
+ *   при переполнении сегмента вытесняется давно не использованный счетчик
+ * - скользящее окно: счетчик текущего окна плюс доля счетчика предыдущего окна,
+ *   пропорциональная еще не истекшей части окна
+ * - попытка резервируется до проверки кода; если лимит исчерпан, проверка отклоняется
+ *   без обращения к хранилищу кодов и БД. Успешная проверка резерв возвращает
+ * - при исчерпании лимита операции ее активные коды аннулируются
+ * - счетчики периодически синхронизируются между узлами через таблицу otp_attempts:
+ *   узел прибавляет свои приросты и забирает итоговые значения, измененные другими узлами
+ * Настройки берутся из файла attempts.properties.
+ */
+public class OtpAttemptLimiter {
+    private static final Logger logger = Logger.getLogger(OtpAttemptLimiter.class.getName());
+
+    private static final String OPERATION = "OPERATION";
+    private static final String PRINCIPAL = "PRINCIPAL";
+
+    private final OtpDao otpDao;
+    private final OtpHotStore hotStore;
+    private final OtpAttemptDao attemptDao;
+    private final boolean enabled;
+    private final int maxOperationFailures;
+    private final int maxPrincipalFailures;
+    private final long windowMs;
+    private final Stripe[] stripes;
+    private final long syncIntervalMs;
+    private final Thread syncer;
+    private volatile boolean running;
+    private long lastPullMs;
+    private long lastCleanupBucket;
+
+    /**
+     * Конструктор. Загружает настройки из attempts.properties.
+     * @param otpDao DAO для аннулирования кодов операции
+     * @param hotStore горячее хранилище активных кодов
+     * @param attemptDao DAO общих счетчиков попыток
+     */
+    public OtpAttemptLimiter(OtpDao otpDao, OtpHotStore hotStore, OtpAttemptDao attemptDao) {
+        this.otpDao = otpDao;
+        this.hotStore = hotStore;
+        this.attemptDao = attemptDao;
+        Properties config = loadConfig();
+        this.enabled = Boolean.parseBoolean(config.getProperty("attempts.enabled", "true"));
+        this.maxOperationFailures = Integer.parseInt(config.getProperty("attempts.max_per_operation", "5"));
+        this.maxPrincipalFailures = Integer.parseInt(config.getProperty("attempts.max_per_principal", "30"));
+        this.windowMs = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(config.getProperty("attempts.window_seconds", "900")));
+        int stripeCount = Integer.parseInt(config.getProperty("attempts.stripes", "64"));
+        int stripeCapacity = Integer.parseInt(config.getProperty("attempts.stripe_capacity", "4096"));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(i, stripeCapacity);
+        }
+        this.syncIntervalMs = Long.parseLong(config.getProperty("attempts.sync_interval_ms", "5000"));
+        this.syncer = new Thread(this::syncLoop, "otp-attempts-sync");
+        this.syncer.setDaemon(true);
+    }
+
+    /**
+     * Загружает параметры из файла attempts.properties.
+     * Если файл не найден - используются значения по умолчанию.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("attempts.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации счетчиков попыток", e);
+        }
+        return props;
+    }
+
+    /**
+     * Запуск синхронизации счетчиков между узлами (если задан интервал)
+     */
+    public void start() {
+        if (!enabled || syncIntervalMs <= 0) {
+            return;
+        }
+        running = true;
+        syncer.start();
+    }
+
+    /**
+     * Остановка синхронизации; накопленные приросты записываются в БД
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        syncer.interrupt();
+        try {
+            syncer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Длительность окна подсчета в секундах (для заголовка Retry-After)
+     */
+    public long getWindowSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(windowMs);
+    }
+
+    /**
+     * Резервирует попытку проверки кода операции пользователем
+     * @param operationId идентификатор операции
+     * @param principal имя пользователя
+     * @return false, если лимит операции или пользователя исчерпан (проверку выполнять нельзя)
+     */
+    public boolean tryAcquire(String operationId, String principal) {
+        if (!enabled) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Stripe operationStripe = stripeFor(OPERATION, operationId);
+        Stripe principalStripe = stripeFor(PRINCIPAL, principal);
+        // Сегменты блокируются в порядке индексов, чтобы не было взаимной блокировки
+        Stripe first = operationStripe.index <= principalStripe.index ? operationStripe : principalStripe;
+        Stripe second = first == operationStripe ? principalStripe : operationStripe;
+        synchronized (first) {
+            synchronized (second) {
+                Counter operation = operationStripe.getOrCreate(OPERATION, operationId);
+                Counter user = principalStripe.getOrCreate(PRINCIPAL, principal);
+                if (operation.estimate(now, windowMs) >= maxOperationFailures
+                        || user.estimate(now, windowMs) >= maxPrincipalFailures) {
+                    return false;
+                }
+                operation.add(1);
+                user.add(1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Завершает зарезервированную попытку.
+     * Успешная попытка возвращает резерв; после неудачной при исчерпании лимита операции
+     * ее активные коды аннулируются.
+     * @param operationId идентификатор операции
+     * @param principal имя пользователя
+     * @param failed true, если код не подошел
+     */
+    public void complete(String operationId, String principal, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        if (!failed) {
+            release(OPERATION, operationId);
+            release(PRINCIPAL, principal);
+            return;
+        }
+        if (markExhausted(operationId, System.currentTimeMillis())) {
+            invalidate(operationId);
+        }
+    }
+
+    private void release(String scope, String key) {
+        Stripe stripe = stripeFor(scope, key);
+        synchronized (stripe) {
+            Counter counter = stripe.get(scope, key);
+            if (counter != null) {
+                counter.roll(System.currentTimeMillis() / windowMs);
+                // Резерв мог остаться в предыдущем окне
+                if (counter.current > 0) {
+                    counter.add(-1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Отмечает аннулирование кодов исчерпавшей лимит операции (не чаще раза за окно)
+     * @return true, если коды операции нужно аннулировать
+     */
+    private boolean markExhausted(String operationId, long now) {
+        Stripe stripe = stripeFor(OPERATION, operationId);
+        synchronized (stripe) {
+            Counter counter = stripe.get(OPERATION, operationId);
+            if (counter == null || counter.estimate(now, windowMs) < maxOperationFailures
+                    || now - counter.invalidatedAtMs < windowMs) {
+                return false;
+            }
+            counter.invalidatedAtMs = now;
+            return true;
+        }
+    }
+
+    private void invalidate(String operationId) {
+        hotStore.expireByOperationId(operationId);
+        int expired = otpDao.expireActiveByOperationId(operationId);
+        logger.warning("Превышено число неудачных попыток проверки OTP для операции " + operationId
+                + ", аннулировано кодов: " + expired);
+    }
+
+    private Stripe stripeFor(String scope, String key) {
+        return stripes[Math.floorMod(31 * scope.hashCode() + key.hashCode(), stripes.length)];
+    }
+
+    /**
+     * Цикл синхронизации: запись своих приростов, затем чтение итоговых значений
+     */
+    private void syncLoop() {
+        lastPullMs = System.currentTimeMillis() - 2 * windowMs;
+        while (running) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(syncIntervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                sync();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Ошибка синхронизации счетчиков попыток", e);
+            }
+        }
+        push();
+    }
+
+    private void sync() {
+        // Незаписанные приросты остаются в счетчиках до следующей попытки,
+        // а чтение изменений других узлов выполняется в любом случае
+        if (!push()) {
+            logger.warning("Не удалось записать приросты счетчиков попыток, повтор при следующей синхронизации");
+        }
+        long now = System.currentTimeMillis();
+        long bucket = now / windowMs;
+        // Глубина чтения покрывает время с прошлого успешного чтения и запас на задержки записи
+        List<OtpAttemptCount> counts = attemptDao.findUpdatedWithin(now - lastPullMs + syncIntervalMs, bucket - 1);
+        if (counts == null) {
+            return;
+        }
+        lastPullMs = now;
+        for (OtpAttemptCount count : counts) {
+            Stripe stripe = stripeFor(count.getScope(), count.getKey());
+            synchronized (stripe) {
+                stripe.getOrCreate(count.getScope(), count.getKey()).merge(bucket, count.getBucket(), count.getFailures());
+            }
+            if (OPERATION.equals(count.getScope()) && markExhausted(count.getKey(), now)) {
+                invalidate(count.getKey());
+            }
+        }
+        if (bucket > lastCleanupBucket) {
+            attemptDao.deleteBucketsBefore(bucket - 1);
+            lastCleanupBucket = bucket;
+        }
+    }
+
+    /**
+     * Записывает накопленные приросты счетчиков в БД.
+     * Приросты списываются только после успешной записи.
+     * @return true, если запись успешна или записывать нечего
+     */
+    private boolean push() {
+        List<Counter> counters = new ArrayList<>();
+        List<long[]> snapshots = new ArrayList<>();
+        List<OtpAttemptCount> deltas = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Counter counter : stripe.counters.values()) {
+                    if (counter.unsyncedCurrent != 0) {
+                        deltas.add(new OtpAttemptCount(counter.scope, counter.key, counter.bucket,
+                                counter.unsyncedCurrent));
+                    }
+                    if (counter.unsyncedPrevious != 0) {
+                        deltas.add(new OtpAttemptCount(counter.scope, counter.key, counter.bucket - 1,
+                                counter.unsyncedPrevious));
+                    }
+                    if (counter.unsyncedCurrent != 0 || counter.unsyncedPrevious != 0) {
+                        counters.add(counter);
+                        snapshots.add(new long[] {counter.bucket, counter.unsyncedCurrent, counter.unsyncedPrevious});
+                    }
+                }
+            }
+        }
+        if (deltas.isEmpty()) {
+            return true;
+        }
+        if (!attemptDao.addFailures(deltas)) {
+            return false;
+        }
+        for (int i = 0; i < counters.size(); i++) {
+            Counter counter = counters.get(i);
+            long[] snapshot = snapshots.get(i);
+            synchronized (stripeFor(counter.scope, counter.key)) {
+                counter.settle(snapshot[0], (int) snapshot[1], (int) snapshot[2]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Сегмент счетчиков со своей блокировкой; размер ограничен, вытесняется давно не использованный
+     */
+    private static final class Stripe {
+        final int index;
+        final Map<String, Counter> counters;
+
+        Stripe(int index, int capacity) {
+            this.index = index;
+            this.counters = new LinkedHashMap<String, Counter>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Counter> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        Counter get(String scope, String key) {
+            return counters.get(scope + ':' + key);
+        }
+
+        Counter getOrCreate(String scope, String key) {
+            return counters.computeIfAbsent(scope + ':' + key, k -> new Counter(scope, key));
+        }
+    }
+
+    /**
+     * Счетчик неудачных попыток за текущее и предыдущее окно.
+     * Изменяется только под блокировкой своего сегмента.
+     */
+    private static final class Counter {
+        final String scope;
+        final String key;
+        long bucket;
+        int current;
+        int previous;
+        // Счетчик синхронизируется, только если ключ помещается в otp_attempts.attempt_key
+        final boolean synced;
+        // Приросты, еще не записанные в БД
+        int unsyncedCurrent;
+        int unsyncedPrevious;
+        long invalidatedAtMs = Long.MIN_VALUE / 2;
+
+        Counter(String scope, String key) {
+            this.scope = scope;
+            this.key = key;
+            this.synced = key.length() <= OtpAttemptDao.MAX_KEY_LENGTH;
+        }
+
+        /**
+         * Переход к окну nowBucket
+         */
+        void roll(long nowBucket) {
+            if (nowBucket <= bucket) {
+                return;
+            }
+            if (nowBucket == bucket + 1) {
+                previous = current;
+                unsyncedPrevious = unsyncedCurrent;
+            } else {
+                previous = 0;
+                unsyncedPrevious = 0;
+            }
+            current = 0;
+            unsyncedCurrent = 0;
+            bucket = nowBucket;
+        }
+
+        /**
+         * Оценка числа неудачных попыток в скользящем окне
+         */
+        double estimate(long now, long windowMs) {
+            roll(now / windowMs);
+            double previousWeight = 1.0 - (double) (now - bucket * windowMs) / windowMs;
+            return previous * previousWeight + current;
+        }
+
+        void add(int delta) {
+            current += delta;
+            if (synced) {
+                unsyncedCurrent += delta;
+            }
+        }
+
+        /**
+         * Объединение с итоговым значением из БД: оно уже включает записанные приросты этого узла
+         */
+        void merge(long nowBucket, long countBucket, int failures) {
+            roll(nowBucket);
+            if (countBucket == bucket) {
+                current = Math.max(current, failures + unsyncedCurrent);
+            } else if (countBucket == bucket - 1) {
+                previous = Math.max(previous, failures + unsyncedPrevious);
+            }
+        }
+
+        /**
+         * Списание записанных в БД приростов (снимок сделан в окне snapshotBucket)
+         */
+        void settle(long snapshotBucket, int currentDelta, int previousDelta) {
+            if (snapshotBucket == bucket) {
+                unsyncedCurrent -= currentDelta;
+                unsyncedPrevious -= previousDelta;
+            } else if (snapshotBucket == bucket - 1) {
+                // Окно сменилось после снимка: текущее окно снимка стало предыдущим
+                unsyncedPrevious -= currentDelta;
+            }
+        }
+    }
+}
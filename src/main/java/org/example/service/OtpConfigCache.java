@@ -0,0 +1,142 @@
+package org.example.service;
+
+import org.example.dao.OtpConfigDao;
+import org.example.model.OtpConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Кэш конфигурации OTP.
+ * Текущая конфигурация хранится как неизменяемый снимок в volatile-поле,
+ * поэтому чтение не обращается к БД. Снимок обновляется:
+ * - сразу после локального изменения конфигурации
+ * - по уведомлению PostgreSQL NOTIFY об изменении на другом узле
+ * - периодической сверкой с БД (на случай потерянных уведомлений)
+ */
+public class OtpConfigCache {
+    private static final Logger logger = Logger.getLogger(OtpConfigCache.class.getName());
+    // Интервал периодической сверки с БД
+    private static final long RECONCILE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // Максимальное ожидание уведомления за одну итерацию
+    private static final int LISTEN_TIMEOUT_MILLIS = 1000;
+    // Пауза перед повторным подключением после ошибки
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    private final OtpConfigDao otpConfigDao;
+    private final Thread listener;
+
+    // Текущий снимок конфигурации (null - конфигурация еще не загружена)
+    private volatile Snapshot snapshot;
+    private volatile boolean running;
+    private long lastReloadMillis;
+
+    /**
+     * Конструктор. Загружает начальную конфигурацию из БД.
+     * @param otpConfigDao DAO конфигурации OTP
+     */
+    public OtpConfigCache(OtpConfigDao otpConfigDao) {
+        this.otpConfigDao = otpConfigDao;
+        reload();
+        this.listener = new Thread(this::listenLoop, "otp-config-listener");
+        this.listener.setDaemon(true);
+    }
+
+    /**
+     * Запуск потока, ожидающего уведомления об изменениях
+     */
+    public void start() {
+        running = true;
+        listener.start();
+    }
+
+    /**
+     * Остановка потока уведомлений
+     */
+    public void stop() {
+        running = false;
+        listener.interrupt();
+    }
+
+    /**
+     * Возвращает текущую конфигурацию без обращения к БД
+     * @return копия снимка или пустой Optional, если конфигурация не загружена
+     */
+    public Optional<OtpConfig> get() {
+        Snapshot current = snapshot;
+        return current != null ? Optional.of(current.toOtpConfig()) : Optional.empty();
+    }
+
+    /**
+     * Заменяет снимок конфигурацией, только что записанной в БД этим узлом
+     * @param config сохраненная конфигурация
+     */
+    public void update(OtpConfig config) {
+        snapshot = new Snapshot(config);
+    }
+
+    /**
+     * Перечитывает конфигурацию из БД. При ошибке сохраняется прежний снимок.
+     */
+    private void reload() {
+        otpConfigDao.getConfig().ifPresent(this::update);
+        lastReloadMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Цикл ожидания уведомлений. После каждого (пере)подключения конфигурация
+     * перечитывается, так как уведомления во время разрыва могли быть потеряны.
+     */
+    private void listenLoop() {
+        while (running) {
+            try (Connection conn = otpConfigDao.openChangeListener()) {
+                reload();
+                logger.info("Подписка на изменения конфигурации OTP установлена");
+                while (running) {
+                    if (otpConfigDao.awaitChange(conn, LISTEN_TIMEOUT_MILLIS)) {
+                        logger.info("Получено уведомление об изменении конфигурации OTP");
+                        reload();
+                    } else if (System.currentTimeMillis() - lastReloadMillis >= RECONCILE_INTERVAL_MILLIS) {
+                        reload();
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.log(Level.WARNING, "Потеряна подписка на изменения конфигурации OTP, повтор через "
+                        + RECONNECT_DELAY_MILLIS + " мс", e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                reload();
+            }
+        }
+    }
+
+    /**
+     * Неизменяемый снимок конфигурации
+     */
+    private static final class Snapshot {
+        final Long id;
+        final int codeLength;
+        final int lifetimeInMinutes;
+
+        Snapshot(OtpConfig config) {
+            this.id = config.getId();
+            this.codeLength = config.getCodeLength();
+            this.lifetimeInMinutes = config.getLifetimeInMinutes();
+        }
+
+        OtpConfig toOtpConfig() {
+            return new OtpConfig(id, codeLength, lifetimeInMinutes);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ограничение частоты генерации OTP: корзины токенов (token bucket) по пользователю
+ * и по адресу доставки (канал и телефон/email/chat id).
+ * - корзина хранится одним числом: теоретическим временем прибытия следующего запроса (GCRA),
+ *   что эквивалентно корзине токенов с емкостью capacity и пополнением refill_per_minute
+ * - пополнение ленивое: вычисляется при обращении к ключу, фоновых потоков нет
+ * - полная корзина равносильна отсутствующей, поэтому простаивающие ключи удаляются
+ *   при периодическом проходе, который выполняет один из вызывающих потоков
+ * Настройки берутся из файла throttle.properties.
+ */
+public class OtpGenerationThrottle {
+    private static final Logger logger = Logger.getLogger(OtpGenerationThrottle.class.getName());
+
+    private final boolean enabled;
+    private final Limit userLimit;
+    private final Limit destinationLimit;
+    private final ConcurrentHashMap<Long, Long> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> destinations = new ConcurrentHashMap<>();
+    private final long sweepIntervalMs;
+    private final AtomicLong nextSweepMs = new AtomicLong();
+
+    /**
+     * Конструктор. Загружает настройки из throttle.properties.
+     */
+    public OtpGenerationThrottle() {
+        Properties config = loadConfig();
+        this.enabled = Boolean.parseBoolean(config.getProperty("throttle.enabled", "true"));
+        this.userLimit = new Limit(
+                Integer.parseInt(config.getProperty("throttle.user.capacity", "10")),
+                Integer.parseInt(config.getProperty("throttle.user.refill_per_minute", "10")));
+        this.destinationLimit = new Limit(
+                Integer.parseInt(config.getProperty("throttle.destination.capacity", "3")),
+                Integer.parseInt(config.getProperty("throttle.destination.refill_per_minute", "1")));
+        this.sweepIntervalMs = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(config.getProperty("throttle.sweep_interval_seconds", "60")));
+        this.nextSweepMs.set(System.currentTimeMillis() + sweepIntervalMs);
+    }
+
+    /**
+     * Загружает параметры из файла throttle.properties.
+     * Если файл не найден - используются значения по умолчанию.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("throttle.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации ограничения генерации OTP", e);
+        }
+        return props;
+    }
+
+    /**
+     * Забирает по токену из корзин пользователя и адреса доставки.
+     * Если одна из корзин пуста, токен не списывается ни из одной.
+     * @param userId идентификатор пользователя
+     * @param channel канал отправки (в нижнем регистре)
+     * @param destination адрес доставки или null, если отправка не выполняется
+     * @return 0, если генерация разрешена, иначе через сколько секунд повторить запрос
+     */
+    public long tryAcquire(Long userId, String channel, String destination) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+
+        long waitMs = userLimit.acquire(users, userId, now);
+        if (waitMs == 0 && destination != null) {
+            waitMs = destinationLimit.acquire(destinations, channel + ':' + destination, now);
+            if (waitMs > 0) {
+                userLimit.refund(users, userId, now);
+            }
+        }
+        if (waitMs > 0) {
+            logger.warning("Превышен лимит генерации OTP для пользователя " + userId + " (" + channel + ")");
+        }
+        return waitMs == 0 ? 0 : Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMs + 999));
+    }
+
+    /**
+     * Удаляет ключи с полными корзинами; проход выполняет один поток не чаще интервала
+     */
+    private void sweepIfDue(long now) {
+        long next = nextSweepMs.get();
+        if (now < next || !nextSweepMs.compareAndSet(next, now + sweepIntervalMs)) {
+            return;
+        }
+        for (Long key : users.keySet()) {
+            users.computeIfPresent(key, (k, tat) -> tat <= now ? null : tat);
+        }
+        for (String key : destinations.keySet()) {
+            destinations.computeIfPresent(key, (k, tat) -> tat <= now ? null : tat);
+        }
+    }
+
+    /**
+     * Параметры корзины: интервал пополнения одного токена и допустимый запас (capacity - 1 интервал)
+     */
+    private static final class Limit {
+        final long intervalMs;
+        final long toleranceMs;
+
+        Limit(int capacity, int refillPerMinute) {
+            this.intervalMs = TimeUnit.MINUTES.toMillis(1) / Math.max(1, refillPerMinute);
+            this.toleranceMs = intervalMs * (Math.max(1, capacity) - 1);
+        }
+
+        /**
+         * Забирает токен: сдвигает время прибытия на интервал, если корзина не пуста
+         * @return 0 или время ожидания следующего токена в миллисекундах
+         */
+        <K> long acquire(ConcurrentHashMap<K, Long> buckets, K key, long now) {
+            long[] waitMs = new long[1];
+            buckets.compute(key, (k, tat) -> {
+                long arrival = tat == null ? now : Math.max(tat, now);
+                if (arrival - now > toleranceMs) {
+                    waitMs[0] = arrival - now - toleranceMs;
+                    return tat;
+                }
+                return arrival + intervalMs;
+            });
+            return waitMs[0];
+        }
+
+        /**
+         * Возвращает ранее забранный токен
+         */
+        <K> void refund(ConcurrentHashMap<K, Long> buckets, K key, long now) {
+            buckets.computeIfPresent(key, (k, tat) -> tat - intervalMs <= now ? null : tat - intervalMs);
+        }
+    }
+}
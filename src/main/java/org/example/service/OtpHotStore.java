@@ -0,0 +1,419 @@
+package org.example.service;
+
+import org.example.dao.OtpDao;
+import org.example.model.Otp;
+import org.example.model.OtpConfig;
+import org.example.model.OtpVerificationResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Горячее хранилище активных OTP-кодов в памяти (опционально, включается в hot_store.properties).
+ * Коды хранятся в наборе сегментов (lock striping) с ключом (operationId, code) до истечения срока.
+ * Проверка кода выполняется в памяти атомарной сменой статуса ACTIVE -> USED,
+ * а переход в USED записывается в БД фоновым потоком пачками (write-behind)
+ * с задержкой не более интервала сброса.
+ * Вставка OTP остается синхронной (вместе с записью outbox), в хранилище код попадает после фиксации.
+ * Код, которого нет в хранилище, проверяется через БД; на время такой проверки ключ отмечается,
+ * и код, добавленный в этот момент (после фиксации, но до put), тоже проверяется через БД,
+ * а результат проверки через БД переносится в хранилище (completeDbVerify). Поэтому код,
+ * использованный через БД, не может быть повторно использован в памяти.
+ * При запуске хранилище восстанавливается из активных строк таблицы.
+ *
+ * Ограничения:
+ * - хранилище локально для узла, поэтому включать его можно только при одном экземпляре
+ *   приложения или при привязке операции к узлу
+ * - при аварийной остановке теряются переходы в USED, еще не записанные в БД (не более интервала сброса)
+ * - запись USED выполняется только для строк в статусе ACTIVE: если планировщик истечения успел
+ *   перевести строку в EXPIRED раньше фоновой записи, в истории БД код останется EXPIRED
+ *   (проверка при этом уже была успешной)
+ */
+public class OtpHotStore {
+    private static final Logger logger = Logger.getLogger(OtpHotStore.class.getName());
+
+    // Идентификатор отметки проверки через БД (у сохраненных кодов id положительный)
+    private static final long MARKER_ID = 0;
+
+    // Срок хранения отметки: не меньше максимального времени жизни кода
+    private static final long MARKER_TTL_MS = TimeUnit.MINUTES.toMillis(OtpConfig.MAX_LIFETIME_MINUTES);
+
+    private final OtpDao otpDao;
+    private final boolean enabled;
+    private final Stripe[] stripes;
+    private final long flushIntervalNanos;
+    private final int flushBatchSize;
+    private final long purgeIntervalMs;
+    private final int rebuildFetchSize;
+
+    // Идентификаторы использованных кодов, ожидающие записи в БД
+    private final Queue<Long> pendingUsed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Thread flusher;
+    private volatile boolean running;
+    private long lastPurgeMs;
+
+    /**
+     * Конструктор. Загружает настройки из hot_store.properties.
+     * @param otpDao DAO для работы с OTP-кодами
+     */
+    public OtpHotStore(OtpDao otpDao) {
+        this.otpDao = otpDao;
+        Properties config = loadConfig();
+        this.enabled = Boolean.parseBoolean(config.getProperty("hot_store.enabled", "false"));
+        int stripeCount = Integer.parseInt(config.getProperty("hot_store.stripes", "64"));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.parseLong(config.getProperty("hot_store.flush_interval_ms", "50")));
+        this.flushBatchSize = Integer.parseInt(config.getProperty("hot_store.flush_batch_size", "1000"));
+        this.purgeIntervalMs = Long.parseLong(config.getProperty("hot_store.purge_interval_ms", "5000"));
+        this.rebuildFetchSize = Integer.parseInt(config.getProperty("hot_store.rebuild_fetch_size", "10000"));
+        this.flusher = new Thread(this::flushLoop, "otp-hot-store-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Загружает параметры из файла hot_store.properties.
+     * Если файл не найден - хранилище выключено.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("hot_store.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации горячего хранилища OTP", e);
+        }
+        return props;
+    }
+
+    /**
+     * Восстанавливает хранилище из БД и запускает фоновую запись.
+     * Вызывается до начала приема запросов: проверка кода, выполненная через БД во время
+     * восстановления, могла бы быть перезаписана устаревшей активной копией.
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        long loaded = otpDao.forEachActive(rebuildFetchSize, this::put);
+        if (loaded < 0) {
+            logger.warning("Не удалось восстановить горячее хранилище OTP, коды будут проверяться через БД");
+        } else {
+            logger.info("Горячее хранилище OTP восстановлено: " + loaded + " кодов за "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " мс");
+        }
+        lastPurgeMs = System.currentTimeMillis();
+        running = true;
+        flusher.start();
+    }
+
+    /**
+     * Остановка: записывает в БД все накопленные переходы в USED
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Добавляет сохраненный в БД активный OTP-код.
+     * Для одинаковых (operationId, code) остается более новый код, как и при проверке через БД.
+     * @param otp сохраненный OTP (с заполненным id)
+     */
+    public void put(Otp otp) {
+        if (!enabled) {
+            return;
+        }
+        Key key = new Key(otp.getOperationId(), otp.getCode());
+        Entry entry = new Entry(otp.getId(), otp.getUserId(),
+                toMillis(otp.getExpiresAt()), toMillis(otp.getCreatedAt()));
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry existing = stripe.entries.get(key);
+            if (existing == null) {
+                stripe.entries.put(key, entry);
+            } else if (existing.id == MARKER_ID) {
+                // Результат проверки через БД относится к этому коду, если он создан до ее завершения
+                entry.dbChecks = existing.dbChecks;
+                String checked = existing.status.get();
+                if (!"PENDING".equals(checked) && entry.createdAtMillis <= existing.createdAtMillis) {
+                    entry.status.set(checked);
+                }
+                stripe.entries.put(key, entry);
+            } else if (existing.id < entry.id) {
+                // Незавершенная проверка через БД выберет самый новый код
+                entry.dbChecks = existing.dbChecks;
+                stripe.entries.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Проверяет OTP-код в памяти и атомарно помечает его использованным
+     * @param code введенный код
+     * @param operationId идентификатор операции
+     * @return результат проверки или null, если кода нет в хранилище (нужна проверка через БД)
+     */
+    public OtpVerificationResult verify(String code, String operationId) {
+        if (!enabled) {
+            return null;
+        }
+        Key key = new Key(operationId, code);
+        Stripe stripe = stripeFor(key);
+        Entry entry;
+        synchronized (stripe) {
+            entry = stripe.entries.get(key);
+            if (entry == null) {
+                // Отметка проверки через БД: код, добавленный до ее завершения, тоже проверяется через БД
+                entry = new Entry(MARKER_ID, null, System.currentTimeMillis() + MARKER_TTL_MS, Long.MAX_VALUE);
+                entry.status.set("PENDING");
+                stripe.entries.put(key, entry);
+            }
+            if ((entry.id == MARKER_ID && "PENDING".equals(entry.status.get())) || entry.dbChecks > 0) {
+                entry.dbChecks++;
+                return null;
+            }
+        }
+
+        if (System.currentTimeMillis() > entry.expiresAtMillis) {
+            // Статус EXPIRED в БД записывает планировщик истечения
+            entry.status.compareAndSet("ACTIVE", "EXPIRED");
+        }
+        if (entry.status.compareAndSet("ACTIVE", "USED")) {
+            pendingUsed.offer(entry.id);
+            if (pendingCount.incrementAndGet() >= flushBatchSize) {
+                LockSupport.unpark(flusher);
+            }
+            return OtpVerificationResult.USED;
+        }
+        return "USED".equals(entry.status.get())
+                ? OtpVerificationResult.ALREADY_USED
+                : OtpVerificationResult.EXPIRED;
+    }
+
+    /**
+     * Переносит в хранилище результат проверки через БД, начатой после промаха verify.
+     * Вызывается для каждого verify, вернувшего null.
+     * @param code введенный код
+     * @param operationId идентификатор операции
+     * @param result результат проверки через БД
+     */
+    public void completeDbVerify(String code, String operationId, OtpVerificationResult result) {
+        if (!enabled) {
+            return;
+        }
+        Key key = new Key(operationId, code);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(key);
+            if (entry == null) {
+                return;
+            }
+            if (entry.dbChecks > 0) {
+                entry.dbChecks--;
+            }
+            // Статус в БД уже записан, фоновая запись не нужна
+            if (result == OtpVerificationResult.USED) {
+                entry.status.set("USED");
+            } else if (result == OtpVerificationResult.EXPIRED) {
+                entry.status.compareAndSet("ACTIVE", "EXPIRED");
+            }
+            if (entry.id == MARKER_ID) {
+                if ("PENDING".equals(entry.status.get())) {
+                    if (entry.dbChecks == 0) {
+                        stripe.entries.remove(key);
+                    }
+                } else {
+                    // Отметка использованного кода: более ранний код с тем же ключом, добавленный позже, не оживет
+                    entry.createdAtMillis = System.currentTimeMillis();
+                }
+            }
+        }
+    }
+
+    /**
+     * Удаляет из хранилища все коды пользователя
+     * @param userId идентификатор пользователя
+     */
+    public void removeByUserId(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.values().removeIf(entry -> userId.equals(entry.userId));
+            }
+        }
+    }
+
+    /**
+     * Аннулирует активные коды операции (статус EXPIRED в БД записывает вызывающий код)
+     * @param operationId идентификатор операции
+     */
+    public void expireByOperationId(String operationId) {
+        if (!enabled) {
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Map.Entry<Key, Entry> item : stripe.entries.entrySet()) {
+                    if (item.getKey().operationId.equals(operationId)) {
+                        item.getValue().status.compareAndSet("ACTIVE", "EXPIRED");
+                    }
+                }
+            }
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private Stripe stripeFor(Key key) {
+        return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+    }
+
+    /**
+     * Цикл фонового потока: запись накопленных переходов в USED и удаление истекших кодов
+     */
+    private void flushLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            flushUsed();
+            long now = System.currentTimeMillis();
+            if (now - lastPurgeMs >= purgeIntervalMs) {
+                purgeExpired(now);
+                lastPurgeMs = now;
+            }
+        }
+        flushUsed();
+    }
+
+    /**
+     * Записывает накопленные переходы в USED пачками.
+     * При ошибке идентификаторы возвращаются в очередь и записываются на следующей итерации.
+     */
+    private void flushUsed() {
+        List<Long> batch = new ArrayList<>();
+        Long id;
+        while (true) {
+            while (batch.size() < flushBatchSize && (id = pendingUsed.poll()) != null) {
+                batch.add(id);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pendingCount.addAndGet(-batch.size());
+            if (otpDao.updateActiveStatusByIds(batch, "USED") < 0) {
+                logger.warning("Не удалось записать " + batch.size() + " использованных OTP, повтор позже");
+                pendingUsed.addAll(batch);
+                pendingCount.addAndGet(batch.size());
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Удаляет коды с истекшим сроком действия
+     */
+    private void purgeExpired(long now) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.values().removeIf(entry -> now > entry.expiresAtMillis);
+            }
+        }
+    }
+
+    /**
+     * Сегмент хранилища со своей блокировкой
+     */
+    private static final class Stripe {
+        final Map<Key, Entry> entries = new HashMap<>();
+    }
+
+    /**
+     * Ключ хранилища (operationId, code)
+     */
+    private static final class Key {
+        final String operationId;
+        final String code;
+        final int hash;
+
+        Key(String operationId, String code) {
+            this.operationId = operationId;
+            this.code = code;
+            this.hash = Objects.hash(operationId, code);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return operationId.equals(other.operationId) && code.equals(other.code);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Код в хранилище или отметка проверки через БД (id = MARKER_ID).
+     * Переход ACTIVE -> USED в памяти выполняется только атомарным compareAndSet;
+     * dbChecks и createdAtMillis изменяются под блокировкой сегмента.
+     */
+    private static final class Entry {
+        final long id;
+        final Long userId;
+        final long expiresAtMillis;
+        final AtomicReference<String> status = new AtomicReference<>("ACTIVE");
+        // Время создания кода; для отметки - время завершения проверки через БД
+        long createdAtMillis;
+        // Число незавершенных проверок ключа через БД
+        int dbChecks;
+
+        Entry(long id, Long userId, long expiresAtMillis, long createdAtMillis) {
+            this.id = id;
+            this.userId = userId;
+            this.expiresAtMillis = expiresAtMillis;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+}
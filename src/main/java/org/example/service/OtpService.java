@@ -4,22 +4,32 @@ import org.example.dao.OtpConfigDao;
 import org.example.dao.OtpDao;
 import org.example.model.Otp;
 import org.example.model.OtpConfig;
+import org.example.model.OtpGenerationItem;
+import org.example.model.OtpVerificationItem;
+import org.example.model.OtpVerificationResult;
+import org.example.model.OutboxMessage;
 import org.example.model.User;
-import org.example.service.notification.EmailService;
-import org.example.service.notification.FileService;
-import org.example.service.notification.SmsService;
-import org.example.service.notification.TelegramService;
+import org.example.service.notification.NotificationDispatcher;
+import org.example.service.scheduler.OtpExpirationScheduler;
 import org.example.util.PasswordUtil;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
  * Основной сервис для работы с OTP-кодами.
  * Обеспечивает полный жизненный цикл OTP:
  * - Генерация кодов с учетом конфигурации
- * - Отправка через различные каналы связи
+ * - Постановка уведомлений в outbox для асинхронной отправки
+ * - Регистрация времени истечения в колесе таймеров
  * - Верификация и инвалидация кодов
  * - Управление конфигурацией OTP
  */
@@ -29,28 +39,43 @@ public class OtpService {
     // Репозитории для работы с данными
     private final OtpDao otpDao;          // Доступ к OTP-кодам в БД
     private final OtpConfigDao otpConfigDao; // Доступ к настройкам OTP
+    private final OtpConfigCache otpConfigCache; // Кэшированный снимок настроек OTP
 
-    // Сервисы для отправки уведомлений
-    private final EmailService emailService;    // Отправка по email
-    private final SmsService smsService;        // Отправка по SMS
-    private final TelegramService telegramService; // Отправка в Telegram
-    private final FileService fileService;      // Сохранение в файл
+    // Диспетчер асинхронной доставки уведомлений из outbox
+    private final NotificationDispatcher notificationDispatcher;
+
+    // Планировщик истечения OTP (колесо таймеров)
+    private final OtpExpirationScheduler expirationScheduler;
+
+    // Горячее хранилище активных кодов (проверка в памяти)
+    private final OtpHotStore hotStore;
+
+    // Счетчики неудачных попыток проверки (защита от подбора)
+    private final OtpAttemptLimiter attemptLimiter;
+
+    // Ограничение частоты генерации по пользователю и адресу доставки
+    private final OtpGenerationThrottle generationThrottle;
 
     // Утилиты
-    private final PasswordUtil passwordUtil = new PasswordUtil(); // Генерация OTP
+    private final PasswordUtil passwordUtil; // Генерация OTP (общий генератор кодов)
 
     /**
      * Конструктор с внедрением зависимостей
      */
-    public OtpService(OtpDao otpDao, OtpConfigDao otpConfigDao,
-                      EmailService emailService, SmsService smsService,
-                      TelegramService telegramService, FileService fileService) {
+    public OtpService(OtpDao otpDao, OtpConfigDao otpConfigDao, OtpConfigCache otpConfigCache,
+                      NotificationDispatcher notificationDispatcher,
+                      OtpExpirationScheduler expirationScheduler, OtpHotStore hotStore,
+                      OtpAttemptLimiter attemptLimiter, OtpGenerationThrottle generationThrottle,
+                      PasswordUtil passwordUtil) {
         this.otpDao = otpDao;
         this.otpConfigDao = otpConfigDao;
-        this.emailService = emailService;
-        this.smsService = smsService;
-        this.telegramService = telegramService;
-        this.fileService = fileService;
+        this.otpConfigCache = otpConfigCache;
+        this.notificationDispatcher = notificationDispatcher;
+        this.expirationScheduler = expirationScheduler;
+        this.hotStore = hotStore;
+        this.attemptLimiter = attemptLimiter;
+        this.generationThrottle = generationThrottle;
+        this.passwordUtil = passwordUtil;
     }
 
     /**
@@ -59,10 +84,11 @@ public class OtpService {
      * @param operationId Идентификатор операции (например, "password-reset")
      * @param notificationType Канал отправки (email/sms/telegram/file)
      * @return Созданный OTP-объект или null при ошибке
+     * @throws RateLimitExceededException если превышен лимит генерации пользователя или адреса доставки
      */
     public Otp generateOtp(User user, String operationId, String notificationType) {
-        // Получение текущей конфигурации OTP
-        Optional<OtpConfig> configOptional = otpConfigDao.getConfig();
+        // Получение текущей конфигурации OTP (из кэша, без обращения к БД)
+        Optional<OtpConfig> configOptional = otpConfigCache.get();
         if (!configOptional.isPresent()) {
             logger.severe("Конфигурация OTP не найдена");
             return null;
@@ -73,6 +99,16 @@ public class OtpService {
         int codeLength = config.getCodeLength();
         int lifetimeInMinutes = config.getLifetimeInMinutes();
 
+        // Определение адреса доставки для выбранного канала
+        String channel = notificationType.toLowerCase();
+        String destination = resolveDestination(user, channel);
+
+        // Ограничение частоты генерации (до обращения к БД и отправки)
+        long retryAfterSeconds = generationThrottle.tryAcquire(user.getId(), channel, destination);
+        if (retryAfterSeconds > 0) {
+            throw new RateLimitExceededException("Слишком частые запросы OTP", retryAfterSeconds);
+        }
+
         // Генерация кода и временных меток
         String code = passwordUtil.generateOtp(codeLength);
         LocalDateTime now = LocalDateTime.now();
@@ -87,16 +123,22 @@ public class OtpService {
         otp.setExpiresAt(expiresAt);
         otp.setStatus("ACTIVE");
 
-        Otp savedOtp = otpDao.save(otp);
+        // OTP и запись outbox сохраняются в одной транзакции,
+        // отправка выполняется диспетчером вне потока обработки запроса
+        Otp savedOtp = destination != null
+                ? otpDao.saveWithOutbox(otp, new OutboxMessage(channel, destination, operationId, code))
+                : otpDao.save(otp);
         if (savedOtp == null) {
             logger.severe("Ошибка сохранения OTP в БД");
             return null;
         }
+        expirationScheduler.track(savedOtp);
+        hotStore.put(savedOtp);
 
-        // Отправка кода через выбранный канал
-        boolean notificationSent = sendNotification(user, notificationType, code);
-        if (!notificationSent) {
-            logger.warning("Сбой при отправке OTP через " + notificationType);
+        if (destination != null) {
+            notificationDispatcher.wakeUp(channel);
+        } else {
+            logger.warning("OTP не поставлен в очередь отправки через " + notificationType);
         }
 
         logger.info(String.format(
@@ -107,99 +149,245 @@ public class OtpService {
     }
 
     /**
-     * Выбирает канал и отправляет OTP-код пользователю
+     * Генерирует OTP-коды для пачки операций пользователя.
+     * Конфигурация читается один раз, все коды и записи outbox сохраняются
+     * одной транзакцией многострочными INSERT, после чего каждый канал будится один раз.
+     * Элементы без адреса доставки в выбранном канале или сверх лимита частоты генерации
+     * не сохраняются и получают причину отказа.
+     * Каждый элемент расходует токен пользователя и токен адреса, как отдельный запрос:
+     * принимается столько элементов, сколько позволяют корзины, остальные отклоняются с retryAfter.
+     * @param user Пользователь, для которого генерируются коды
+     * @param items Элементы пачки; результат записывается в каждый элемент
+     * @return false, если пачку не удалось сохранить (конфигурация или ошибка БД)
+     */
+    public boolean generateOtpBatch(User user, List<OtpGenerationItem> items) {
+        Optional<OtpConfig> configOptional = otpConfigCache.get();
+        if (!configOptional.isPresent()) {
+            logger.severe("Конфигурация OTP не найдена");
+            return false;
+        }
+
+        OtpConfig config = configOptional.get();
+        int codeLength = config.getCodeLength();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusMinutes(config.getLifetimeInMinutes());
+
+        List<OtpGenerationItem> accepted = new ArrayList<>(items.size());
+        List<Otp> otps = new ArrayList<>(items.size());
+        List<OutboxMessage> messages = new ArrayList<>(items.size());
+        Set<String> channels = new HashSet<>();
+        // Адреса доставки, для которых лимит исчерпан в этой пачке: секунды до повтора
+        Map<String, Long> throttled = new HashMap<>();
+        for (OtpGenerationItem item : items) {
+            String channel = item.getNotificationType().toLowerCase();
+            String destination = resolveDestination(user, channel);
+            if (destination == null) {
+                item.setError("Отправка через " + item.getNotificationType() + " недоступна");
+                continue;
+            }
+            String throttleKey = channel + ':' + destination;
+            Long retryAfterSeconds = throttled.get(throttleKey);
+            if (retryAfterSeconds == null) {
+                retryAfterSeconds = generationThrottle.tryAcquire(user.getId(), channel, destination);
+                if (retryAfterSeconds > 0) {
+                    throttled.put(throttleKey, retryAfterSeconds);
+                }
+            }
+            if (retryAfterSeconds > 0) {
+                item.setError("Слишком частые запросы OTP");
+                item.setRetryAfterSeconds(retryAfterSeconds);
+                continue;
+            }
+
+            Otp otp = new Otp();
+            otp.setUserId(user.getId());
+            otp.setOperationId(item.getOperationId());
+            otp.setCode(passwordUtil.generateOtp(codeLength));
+            otp.setCreatedAt(now);
+            otp.setExpiresAt(expiresAt);
+            otp.setStatus("ACTIVE");
+
+            accepted.add(item);
+            otps.add(otp);
+            messages.add(new OutboxMessage(channel, destination, item.getOperationId(), otp.getCode()));
+            channels.add(channel);
+        }
+
+        if (!otpDao.saveAllWithOutbox(otps, messages)) {
+            logger.severe("Ошибка пакетного сохранения OTP в БД");
+            return false;
+        }
+        for (int i = 0; i < otps.size(); i++) {
+            Otp otp = otps.get(i);
+            accepted.get(i).setOtp(otp);
+            expirationScheduler.track(otp);
+            hotStore.put(otp);
+        }
+        channels.forEach(notificationDispatcher::wakeUp);
+
+        logger.info(String.format(
+                "Сгенерировано OTP для %s: %d из %d",
+                user.getUsername(), otps.size(), items.size()
+        ));
+        return true;
+    }
+
+    /**
+     * Определяет адрес доставки OTP-кода в выбранном канале
      * @param user Получатель кода
-     * @param notificationType Тип уведомления
-     * @param code OTP-код
-     * @return Результат отправки (true - успешно)
+     * @param channel Канал уведомления (в нижнем регистре)
+     * @return Адрес получателя или null, если канал не поддерживается или адрес не указан
      */
-    private boolean sendNotification(User user, String notificationType, String code) {
-        switch (notificationType.toLowerCase()) {
+    private String resolveDestination(User user, String channel) {
+        switch (channel) {
             case "email":
                 if (isValid(user.getEmail())) {
-                    return emailService.sendCode(user.getEmail(), code);
+                    return user.getEmail();
                 }
                 logger.warning("Не указан email для пользователя: " + user.getUsername());
-                return false;
+                return null;
 
             case "sms":
                 if (isValid(user.getPhone())) {
-                    return smsService.sendCode(user.getPhone(), code);
+                    return user.getPhone();
                 }
                 logger.warning("Не указан телефон для пользователя: " + user.getUsername());
-                return false;
+                return null;
 
             case "telegram":
                 if (isValid(user.getTelegramChatId())) {
-                    return telegramService.sendCode(user.getTelegramChatId(), code);
+                    return user.getTelegramChatId();
                 }
                 logger.warning("Не указан Telegram ID для пользователя: " + user.getUsername());
-                return false;
+                return null;
 
             case "file":
-                return fileService.saveCode(
-                        user.getId().toString(),
-                        user.getUsername(),
-                        code
-                );
+                return user.getId().toString();
 
             default:
-                logger.warning("Неподдерживаемый тип уведомления: " + notificationType);
-                return false;
+                logger.warning("Неподдерживаемый тип уведомления: " + channel);
+                return null;
         }
     }
 
     /**
-     * Проверяет валидность OTP-кода для указанной операции
+     * Проверяет OTP-код для указанной операции и помечает его использованным.
+     * Если код есть в горячем хранилище, проверка выполняется в памяти,
+     * иначе проверка срока действия, статуса и перевод в USED выполняются одним запросом к БД.
+     * Если лимит неудачных попыток операции или пользователя исчерпан, код не проверяется.
      * @param code Введенный код
      * @param operationId Идентификатор операции
-     * @return true если код действителен и не использован
+     * @param principal Имя пользователя, выполняющего проверку
+     * @return Результат проверки (USED - код действителен и использован)
      */
-    public boolean verifyOtp(String code, String operationId) {
-        Optional<Otp> otpOptional = otpDao.findByCodeAndOperationId(code, operationId);
-        if (!otpOptional.isPresent()) {
-            logger.warning("Не найден OTP для операции: " + operationId);
-            return false;
+    public OtpVerificationResult verifyOtp(String code, String operationId, String principal) {
+        if (!attemptLimiter.tryAcquire(operationId, principal)) {
+            logger.warning("Превышено число попыток проверки OTP для операции " + operationId
+                    + " пользователем " + principal);
+            return OtpVerificationResult.TOO_MANY_ATTEMPTS;
         }
-
-        Otp otp = otpOptional.get();
-
-        // Проверка срока действия
-        if (otp.isExpired()) {
-            logger.info("Просроченный OTP для операции: " + operationId);
-            otpDao.updateStatus(otp.getId(), "EXPIRED");
-            return false;
+        OtpVerificationResult result = hotStore.verify(code, operationId);
+        if (result == null) {
+            result = otpDao.verifyAndMarkUsed(code, operationId);
+            hotStore.completeDbVerify(code, operationId, result);
+        }
+        attemptLimiter.complete(operationId, principal, isFailedAttempt(result));
+        switch (result) {
+            case USED:
+                logger.info("Успешная верификация OTP для операции: " + operationId);
+                break;
+            case EXPIRED:
+                logger.info("Просроченный OTP для операции: " + operationId);
+                break;
+            case ALREADY_USED:
+                logger.info("Повторное использование OTP для операции: " + operationId);
+                break;
+            case NOT_FOUND:
+                logger.warning("Не найден OTP для операции: " + operationId);
+                break;
+            default:
+                logger.warning("Ошибка проверки OTP для операции: " + operationId);
         }
+        return result;
+    }
 
-        // Проверка активности кода
-        if (!otp.isActive()) {
-            logger.info("Неактивный OTP для операции: " + operationId);
-            return false;
+    /**
+     * Проверяет пачку OTP-кодов и помечает действительные использованными.
+     * Коды из горячего хранилища проверяются в памяти, остальные - одним запросом к БД.
+     * Каждый элемент расходует попытку из лимитов операции и пользователя;
+     * элементы сверх лимита получают TOO_MANY_ATTEMPTS без проверки.
+     * @param items Элементы пачки; результат записывается в каждый элемент
+     * @param principal Имя пользователя, выполняющего проверку
+     */
+    public void verifyOtpBatch(List<OtpVerificationItem> items, String principal) {
+        List<OtpVerificationItem> acquired = new ArrayList<>(items.size());
+        List<OtpVerificationItem> remaining = new ArrayList<>(items.size());
+        for (OtpVerificationItem item : items) {
+            if (!attemptLimiter.tryAcquire(item.getOperationId(), principal)) {
+                item.setResult(OtpVerificationResult.TOO_MANY_ATTEMPTS);
+                continue;
+            }
+            acquired.add(item);
+            OtpVerificationResult result = hotStore.verify(item.getCode(), item.getOperationId());
+            if (result != null) {
+                item.setResult(result);
+            } else {
+                remaining.add(item);
+            }
+        }
+        if (!remaining.isEmpty() && !otpDao.verifyAndMarkUsedAll(remaining)) {
+            remaining.forEach(item -> item.setResult(OtpVerificationResult.ERROR));
+        }
+        for (OtpVerificationItem item : remaining) {
+            hotStore.completeDbVerify(item.getCode(), item.getOperationId(), item.getResult());
+        }
+        for (OtpVerificationItem item : acquired) {
+            attemptLimiter.complete(item.getOperationId(), principal, isFailedAttempt(item.getResult()));
         }
 
-        // Пометить как использованный
-        boolean updated = otpDao.updateStatus(otp.getId(), "USED");
-        if (updated) {
-            logger.info("Успешная верификация OTP для операции: " + operationId);
-            return true;
-        } else {
-            logger.warning("Ошибка обновления статуса OTP: " + operationId);
-            return false;
+        Map<OtpVerificationResult, Integer> summary = new EnumMap<>(OtpVerificationResult.class);
+        for (OtpVerificationItem item : items) {
+            summary.merge(item.getResult(), 1, Integer::sum);
         }
+        logger.info("Пакетная проверка OTP: " + items.size() + " кодов, результаты " + summary);
+    }
+
+    /**
+     * Неудачная попытка - код для операции не найден (возможный подбор).
+     * Просроченный или уже использованный код совпал с выданным, ошибка БД от пользователя не зависит.
+     */
+    private static boolean isFailedAttempt(OtpVerificationResult result) {
+        return result == OtpVerificationResult.NOT_FOUND;
     }
 
     /**
      * Обновляет параметры генерации OTP
      * @param codeLength Новая длина кода (6-8)
      * @param lifetimeInMinutes Новое время жизни (1-15)
-     * @return true если обновление успешно
+     * @return true если обновление успешно; false, в том числе при недопустимых параметрах
      */
     public boolean updateOtpConfig(int codeLength, int lifetimeInMinutes) {
-        return otpConfigDao.getConfig()
+        // Коды старше окна поиска OtpDao не проверяются и не истекают
+        if (lifetimeInMinutes < OtpConfig.MIN_LIFETIME_MINUTES
+                || lifetimeInMinutes > OtpConfig.MAX_LIFETIME_MINUTES) {
+            logger.warning("Недопустимое время жизни OTP: " + lifetimeInMinutes + " мин");
+            return false;
+        }
+        // Более длинный код не помещается в otps.code
+        if (codeLength < OtpConfig.MIN_CODE_LENGTH || codeLength > OtpConfig.MAX_CODE_LENGTH) {
+            logger.warning("Недопустимая длина OTP: " + codeLength);
+            return false;
+        }
+        return otpConfigCache.get()
                 .map(config -> {
                     config.setCodeLength(codeLength);
                     config.setLifetimeInMinutes(lifetimeInMinutes);
-                    return otpConfigDao.updateConfig(config);
+                    boolean updated = otpConfigDao.updateConfig(config);
+                    if (updated) {
+                        // Остальные узлы обновятся по уведомлению из БД
+                        otpConfigCache.update(config);
+                    }
+                    return updated;
                 })
                 .orElseGet(() -> {
                     logger.severe("Конфигурация OTP отсутствует");
@@ -207,11 +395,18 @@ public class OtpService {
                 });
     }
 
+    /**
+     * Длительность окна подсчета неудачных попыток проверки в секундах
+     */
+    public long getAttemptWindowSeconds() {
+        return attemptLimiter.getWindowSeconds();
+    }
+
     /**
      * Возвращает текущую конфигурацию OTP
      */
     public Optional<OtpConfig> getOtpConfig() {
-        return otpConfigDao.getConfig();
+        return otpConfigCache.get();
     }
 
     /**
@@ -220,6 +415,7 @@ public class OtpService {
      */
     public boolean deleteOtpsByUserId(Long userId) {
         logger.info("Удаление OTP для пользователя ID: " + userId);
+        hotStore.removeByUserId(userId);
         return otpDao.deleteByUserId(userId);
     }
 
@@ -0,0 +1,20 @@
+package org.example.service;
+
+/**
+ * Превышен лимит частоты запросов (ответ 429 с заголовком Retry-After)
+ */
+public class RateLimitExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    // Через сколько секунд запрос может быть разрешен
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -6,12 +6,16 @@ import javax.mail.internet.MimeMessage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Сервис для отправки OTP-кодов по электронной почте.
- * Использует JavaMail API и настройки из файла email.properties.
+ * Использует JavaMail API, пул SMTP-соединений и настройки из файла email.properties.
  */
 public class EmailService {
     private static final Logger logger = Logger.getLogger(EmailService.class.getName());
@@ -19,9 +23,13 @@ public class EmailService {
     private final Session session;
     // Email-адрес отправителя (берётся из конфигурации)
     private final String fromEmail;
+    // Пул подключенных SMTP-соединений
+    private final SmtpTransportPool transportPool;
+    // Потоки для асинхронной отправки (по одному на соединение пула)
+    private final ExecutorService executor;
 
     /**
-     * Конструктор. Загружает конфигурацию и инициализирует сессию.
+     * Конструктор. Загружает конфигурацию и инициализирует сессию и пул соединений.
      */
     public EmailService() {
         Properties config = loadConfig();
@@ -29,6 +37,17 @@ public class EmailService {
 
         // Создание сессии без аутентификации (auth=false)
         this.session = Session.getInstance(config);
+
+        int poolSize = Integer.parseInt(config.getProperty("email.pool.size", "4"));
+        this.transportPool = new SmtpTransportPool(session, poolSize,
+                Integer.parseInt(config.getProperty("email.pool.max_messages_per_connection", "100")),
+                Long.parseLong(config.getProperty("email.pool.health_check_idle_ms", "10000")),
+                Long.parseLong(config.getProperty("email.pool.borrow_timeout_ms", "10000")));
+        this.executor = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread thread = new Thread(r, "email-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -52,6 +71,10 @@ public class EmailService {
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Ошибка загрузки конфигурации email", e);
         }
+        // Таймауты SMTP, чтобы зависший сервер не удерживал соединение пула бесконечно
+        props.putIfAbsent("mail.smtp.connectiontimeout", "5000");
+        props.putIfAbsent("mail.smtp.timeout", "10000");
+        props.putIfAbsent("mail.smtp.writetimeout", "10000");
         return props;
     }
 
@@ -70,8 +93,8 @@ public class EmailService {
             message.setSubject("Ваш код подтверждения");
             message.setText("Код: " + code);
 
-            // Отправка письма
-            Transport.send(message);
+            // Отправка письма через соединение из пула
+            transportPool.send(message);
             logger.info("Email отправлен на: " + toEmail);
             return true;
         } catch (MessagingException e) {
@@ -79,4 +102,28 @@ public class EmailService {
             return false;
         }
     }
+
+    /**
+     * Асинхронно отправляет письмо с OTP-кодом.
+     * Параллельность ограничена размером пула SMTP-соединений.
+     * @param toEmail email получателя
+     * @param code OTP-код для отправки
+     * @return future с результатом отправки
+     */
+    public CompletableFuture<Boolean> sendCodeAsync(String toEmail, String code) {
+        return CompletableFuture.supplyAsync(() -> sendCode(toEmail, code), executor);
+    }
+
+    /**
+     * Остановка потоков отправки и закрытие SMTP-соединений
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        transportPool.close();
+    }
 }
@@ -1,50 +1,117 @@
 package org.example.service.notification;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Сервис для сохранения OTP-кодов в локальный файл.
  * Используется как один из каналов доставки OTP (например, для тестирования или аудита).
+ * Запись выполняется фоновым потоком с групповой фиксацией (GroupCommitFileAppender),
+ * настройки берутся из файла file.properties.
  */
 public class FileService {
     private static final Logger logger = Logger.getLogger(FileService.class.getName());
     // Имя файла, в который будут сохраняться OTP-коды
-    private static final String OTP_FILE_PATH = "otp_codes.txt";
+    private final String otpFilePath;
+    // Максимальное ожидание фиксации при синхронной записи
+    private final long saveTimeoutMs;
+    // Фоновый писатель файла
+    private final GroupCommitFileAppender appender;
 
     /**
-     * Сохраняет информацию об OTP-коде в файл.
+     * Конструктор. Загружает настройки из file.properties и запускает фоновый писатель.
+     */
+    public FileService() {
+        Properties config = loadConfig();
+        this.otpFilePath = config.getProperty("file.path", "otp_codes.txt");
+        this.saveTimeoutMs = Long.parseLong(config.getProperty("file.save_timeout_ms", "5000"));
+        try {
+            this.appender = new GroupCommitFileAppender(
+                    Paths.get(otpFilePath),
+                    GroupCommitFileAppender.FsyncPolicy.valueOf(
+                            config.getProperty("file.fsync_policy", "INTERVAL").toUpperCase()),
+                    Long.parseLong(config.getProperty("file.fsync_interval_ms", "100")),
+                    Integer.parseInt(config.getProperty("file.buffer_bytes", "65536")),
+                    Integer.parseInt(config.getProperty("file.max_batch", "1024")),
+                    Long.parseLong(config.getProperty("file.rotate.max_bytes", "104857600")),
+                    Long.parseLong(config.getProperty("file.rotate.interval_ms", "86400000")),
+                    Boolean.parseBoolean(config.getProperty("file.rotate.compress", "true")));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось открыть файл " + otpFilePath, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Загружает параметры из файла file.properties.
+     * Если файл не найден - используются значения по умолчанию.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("file.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации файлового канала", e);
+        }
+        return props;
+    }
+
+    /**
+     * Сохраняет информацию об OTP-коде в файл и ожидает фиксации записи.
      * @param userId       идентификатор пользователя
      * @param operationId  идентификатор операции
      * @param code         OTP-код
      * @return true, если запись успешна; false - если возникла ошибка
      */
     public boolean saveCode(String userId, String operationId, String code) {
-        try (FileWriter writer = new FileWriter(OTP_FILE_PATH, true)) {
-            // Формируем строку с временной меткой и данными
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-            String entry = String.format("[%s] User ID: %s, Operation ID: %s, Code: %s%n",
-                    timestamp, userId, operationId, code);
-
-            writer.write(entry);
-            logger.info("Код сохранен в файл: " + OTP_FILE_PATH);
-            return true;
-        } catch (IOException e) {
+        try {
+            return saveCodeAsync(userId, operationId, code).get(saveTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
             logger.log(Level.SEVERE, "Ошибка при сохранении кода в файл", e);
             return false;
         }
     }
 
+    /**
+     * Асинхронно сохраняет информацию об OTP-коде в файл.
+     * @param userId       идентификатор пользователя
+     * @param operationId  идентификатор операции
+     * @param code         OTP-код
+     * @return future, завершаемый true после надежной записи в файл
+     */
+    public CompletableFuture<Boolean> saveCodeAsync(String userId, String operationId, String code) {
+        return appender.append(userId, operationId, code).whenComplete((saved, error) -> {
+            if (Boolean.TRUE.equals(saved)) {
+                logger.fine("Код сохранен в файл: " + otpFilePath);
+            }
+        });
+    }
+
     /**
      * Возвращает объект файла, в котором хранятся OTP-коды.
      * @return объект File для otp_codes.txt
      */
     public File getOtpFile() {
-        return new File(OTP_FILE_PATH);
+        return new File(otpFilePath);
+    }
+
+    /**
+     * Дописывает накопленные записи и закрывает файл
+     */
+    public void close() {
+        appender.close();
     }
 }
@@ -0,0 +1,358 @@
+package org.example.service.notification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Файловый журнал с групповой фиксацией (group commit).
+ * Вызывающие потоки только добавляют запись в неблокирующую очередь,
+ * а единственный фоновый поток:
+ * - забирает накопившиеся записи пачкой
+ * - кодирует их в переиспользуемый direct-буфер и пишет в FileChannel
+ * - выполняет fsync согласно политике (каждая группа / по интервалу / никогда)
+ * - завершает future записей, когда они стали надежно записаны
+ * - ротирует файл по размеру и времени, при необходимости сжимая старые файлы
+ */
+public class GroupCommitFileAppender {
+    private static final Logger logger = Logger.getLogger(GroupCommitFileAppender.class.getName());
+    private static final DateTimeFormatter ROTATION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    /**
+     * Политика fsync
+     */
+    public enum FsyncPolicy {
+        // fsync после каждой группы записей
+        ALWAYS,
+        // fsync не чаще заданного интервала, future завершаются после fsync
+        INTERVAL,
+        // без fsync, future завершаются после записи в канал
+        NEVER
+    }
+
+    private final Path path;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final int maxBatch;
+    private final long rotateMaxBytes;
+    private final long rotateIntervalMs;
+    private final boolean compressRotated;
+
+    private final Queue<PendingEntry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writerParked = new AtomicBoolean();
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder(128);
+    private final List<PendingEntry> awaitingSync = new ArrayList<>();
+    private final ExecutorService compressor;
+    private final Thread writer;
+
+    private FileChannel channel;
+    private long fileSize;
+    private long fileOpenedAt;
+    private long lastSyncNanos;
+    private volatile boolean running = true;
+
+    /**
+     * @param path путь к файлу журнала
+     * @param fsyncPolicy политика fsync
+     * @param fsyncIntervalMs интервал fsync для политики INTERVAL
+     * @param bufferBytes размер direct-буфера записи
+     * @param maxBatch максимальное число записей в одной группе
+     * @param rotateMaxBytes размер файла, после которого выполняется ротация (0 - без ротации по размеру)
+     * @param rotateIntervalMs период ротации по времени (0 - без ротации по времени)
+     * @param compressRotated сжимать ли ротированные файлы (gzip)
+     */
+    public GroupCommitFileAppender(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMs, int bufferBytes,
+                                   int maxBatch, long rotateMaxBytes, long rotateIntervalMs,
+                                   boolean compressRotated) throws IOException {
+        this.path = path;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        this.maxBatch = maxBatch;
+        this.rotateMaxBytes = rotateMaxBytes;
+        this.rotateIntervalMs = rotateIntervalMs;
+        this.compressRotated = compressRotated;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+        this.compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "file-appender-compress");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        openChannel();
+        this.writer = new Thread(this::runLoop, "file-appender");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Добавляет запись в журнал
+     * @return future, завершаемый true после надежной записи (или false при ошибке ввода-вывода)
+     */
+    public CompletableFuture<Boolean> append(String userId, String operationId, String code) {
+        PendingEntry entry = new PendingEntry(LocalDateTime.now(), userId, operationId, code);
+        if (!running) {
+            entry.future.complete(false);
+            return entry.future;
+        }
+        queue.offer(entry);
+        if (writerParked.get()) {
+            LockSupport.unpark(writer);
+        }
+        return entry.future;
+    }
+
+    /**
+     * Остановка: дописывает очередь, выполняет fsync и закрывает файл
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compressor.shutdown();
+    }
+
+    /**
+     * Основной цикл фонового потока
+     */
+    private void runLoop() {
+        List<PendingEntry> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            PendingEntry entry;
+            while (group.size() < maxBatch && (entry = queue.poll()) != null) {
+                group.add(entry);
+            }
+
+            if (group.isEmpty()) {
+                syncIfDue(false);
+                waitForEntries();
+                continue;
+            }
+
+            commitGroup(group);
+            group.clear();
+        }
+        syncIfDue(true);
+        closeChannel();
+    }
+
+    /**
+     * Ожидание новых записей (или срока отложенного fsync)
+     */
+    private void waitForEntries() {
+        writerParked.set(true);
+        if (queue.isEmpty() && running) {
+            long parkNanos = awaitingSync.isEmpty() ? TimeUnit.SECONDS.toNanos(1) : fsyncIntervalNanos;
+            LockSupport.parkNanos(this, parkNanos);
+        }
+        writerParked.set(false);
+    }
+
+    /**
+     * Записывает группу одним или несколькими вызовами write и фиксирует ее согласно политике
+     */
+    private void commitGroup(List<PendingEntry> group) {
+        try {
+            rotateIfNeeded();
+            for (PendingEntry entry : group) {
+                encode(entry);
+            }
+            flushBuffer();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка записи в файл " + path, e);
+            group.forEach(entry -> entry.future.complete(false));
+            buffer.clear();
+            return;
+        }
+
+        if (fsyncPolicy == FsyncPolicy.NEVER) {
+            group.forEach(entry -> entry.future.complete(true));
+        } else {
+            awaitingSync.addAll(group);
+            syncIfDue(fsyncPolicy == FsyncPolicy.ALWAYS);
+        }
+    }
+
+    /**
+     * Форматирует запись и кодирует ее в буфер, сбрасывая буфер в канал при заполнении
+     */
+    private void encode(PendingEntry entry) throws IOException {
+        line.setLength(0);
+        line.append('[');
+        DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(entry.timestamp, line);
+        line.append("] User ID: ").append(entry.userId)
+                .append(", Operation ID: ").append(entry.operationId)
+                .append(", Code: ").append(entry.code)
+                .append(System.lineSeparator());
+
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flushBuffer();
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileSize += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Выполняет fsync, если он нужен по политике, и завершает ожидающие future
+     */
+    private void syncIfDue(boolean force) {
+        if (awaitingSync.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (!force && now - lastSyncNanos < fsyncIntervalNanos) {
+            return;
+        }
+        boolean synced;
+        try {
+            channel.force(false);
+            synced = true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка fsync файла " + path, e);
+            synced = false;
+        }
+        lastSyncNanos = now;
+        for (PendingEntry entry : awaitingSync) {
+            entry.future.complete(synced);
+        }
+        awaitingSync.clear();
+    }
+
+    /**
+     * Ротация файла по размеру или времени
+     */
+    private void rotateIfNeeded() throws IOException {
+        boolean bySize = rotateMaxBytes > 0 && fileSize >= rotateMaxBytes;
+        boolean byTime = rotateIntervalMs > 0 && fileSize > 0
+                && System.currentTimeMillis() - fileOpenedAt >= rotateIntervalMs;
+        if (!bySize && !byTime) {
+            return;
+        }
+
+        // Ожидающие fsync записи должны быть зафиксированы до закрытия файла
+        syncIfDue(true);
+        closeChannel();
+        Path rotated = rotatedPath();
+        try {
+            Files.move(path, rotated, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            openChannel();
+        }
+        logger.info("Файл " + path + " ротирован в " + rotated);
+
+        if (compressRotated) {
+            compressor.execute(() -> compress(rotated));
+        }
+    }
+
+    /**
+     * Уникальное имя для ротированного файла (не затирает предыдущие, в том числе сжатые)
+     */
+    private Path rotatedPath() {
+        String base = path.getFileName() + "." + LocalDateTime.now().format(ROTATION_SUFFIX);
+        Path candidate = path.resolveSibling(base);
+        for (int i = 1; Files.exists(candidate)
+                || Files.exists(candidate.resolveSibling(candidate.getFileName() + ".gz")); i++) {
+            candidate = path.resolveSibling(base + "-" + i);
+        }
+        return candidate;
+    }
+
+    private void compress(Path source) {
+        Path target = source.resolveSibling(source.getFileName() + ".gz");
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(target), 64 * 1024)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка сжатия файла " + source, e);
+            return;
+        }
+        try {
+            Files.delete(source);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Не удалось удалить файл после сжатия " + source, e);
+        }
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        fileOpenedAt = System.currentTimeMillis();
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ошибка закрытия файла " + path, e);
+        }
+    }
+
+    /**
+     * Запись, ожидающая фиксации
+     */
+    private static final class PendingEntry {
+        final LocalDateTime timestamp;
+        final String userId;
+        final String operationId;
+        final String code;
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        PendingEntry(LocalDateTime timestamp, String userId, String operationId, String code) {
+            this.timestamp = timestamp;
+            this.userId = userId;
+            this.operationId = operationId;
+            this.code = code;
+        }
+    }
+}
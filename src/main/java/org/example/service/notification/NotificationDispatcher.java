@@ -0,0 +1,257 @@
+package org.example.service.notification;
+
+import org.example.dao.OutboxDao;
+import org.example.model.OutboxMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Диспетчер доставки уведомлений из outbox.
+ * Для каждого канала запускаются отдельные рабочие потоки, которые:
+ * - забирают пачку готовых записей из notification_outbox
+ * - отправляют их через зарегистрированный NotificationSender
+ * - удаляют доставленные записи, а для остальных планируют повтор с экспоненциальной задержкой
+ * Доставка выполняется по схеме at-least-once и переживает перезапуск сервиса.
+ */
+public class NotificationDispatcher {
+    private static final Logger logger = Logger.getLogger(NotificationDispatcher.class.getName());
+
+    // DAO очереди уведомлений
+    private final OutboxDao outboxDao;
+    // Рабочие потоки по каналам
+    private final Map<String, ChannelWorker> workers = new LinkedHashMap<>();
+
+    // Параметры обработки (из outbox.properties)
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final int workersPerChannel;
+    private final int maxAttempts;
+    private final int leaseSeconds;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final long sendTimeoutMs;
+
+    private volatile boolean running;
+
+    /**
+     * Конструктор. Загружает параметры диспетчера из файла outbox.properties.
+     * @param outboxDao DAO очереди уведомлений
+     */
+    public NotificationDispatcher(OutboxDao outboxDao) {
+        this.outboxDao = outboxDao;
+        Properties config = loadConfig();
+        this.batchSize = Integer.parseInt(config.getProperty("outbox.batch_size", "50"));
+        this.pollIntervalMs = Long.parseLong(config.getProperty("outbox.poll_interval_ms", "500"));
+        this.workersPerChannel = Integer.parseInt(config.getProperty("outbox.workers_per_channel", "1"));
+        this.maxAttempts = Integer.parseInt(config.getProperty("outbox.max_attempts", "8"));
+        this.leaseSeconds = Integer.parseInt(config.getProperty("outbox.lease_seconds", "60"));
+        this.backoffBaseMs = Long.parseLong(config.getProperty("outbox.backoff_base_ms", "1000"));
+        this.backoffMaxMs = Long.parseLong(config.getProperty("outbox.backoff_max_ms", "300000"));
+        this.sendTimeoutMs = Long.parseLong(config.getProperty("outbox.send_timeout_ms", "30000"));
+    }
+
+    /**
+     * Загружает параметры из файла outbox.properties.
+     * Если файл не найден - используются значения по умолчанию.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("outbox.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации outbox", e);
+        }
+        return props;
+    }
+
+    /**
+     * Регистрирует отправителя для канала. Вызывается до start().
+     * @param channel имя канала (email, sms, telegram, file)
+     * @param sender отправитель уведомлений канала
+     */
+    public void registerChannel(String channel, NotificationSender sender) {
+        workers.put(channel, new ChannelWorker(channel, sender));
+    }
+
+    /**
+     * Запускает рабочие потоки всех зарегистрированных каналов
+     */
+    public void start() {
+        running = true;
+        workers.values().forEach(ChannelWorker::start);
+        logger.info("Диспетчер уведомлений запущен, каналы: " + workers.keySet());
+    }
+
+    /**
+     * Сигнализирует каналу о новых записях, чтобы не ждать очередного опроса
+     * @param channel имя канала
+     */
+    public void wakeUp(String channel) {
+        ChannelWorker worker = workers.get(channel);
+        if (worker != null) {
+            worker.signal.release();
+        }
+    }
+
+    /**
+     * Остановка рабочих потоков. Недоставленные записи остаются в outbox
+     * и будут обработаны после перезапуска.
+     */
+    public void stop() {
+        running = false;
+        for (ChannelWorker worker : workers.values()) {
+            worker.stop();
+        }
+        logger.info("Диспетчер уведомлений остановлен");
+    }
+
+    /**
+     * Вычисляет задержку перед следующей попыткой (экспоненциально, с ограничением и разбросом)
+     */
+    private long backoffMillis(int attempts) {
+        long delay = backoffBaseMs << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, backoffMaxMs);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Рабочие потоки одного канала
+     */
+    private class ChannelWorker {
+        private final String channel;
+        private final NotificationSender sender;
+        private final Semaphore signal = new Semaphore(0);
+        private final List<Thread> threads = new ArrayList<>();
+
+        ChannelWorker(String channel, NotificationSender sender) {
+            this.channel = channel;
+            this.sender = sender;
+        }
+
+        void start() {
+            for (int i = 0; i < workersPerChannel; i++) {
+                Thread thread = new Thread(this::runLoop, "outbox-" + channel + "-" + i);
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+
+        void stop() {
+            signal.release(threads.size());
+            for (Thread thread : threads) {
+                try {
+                    thread.join(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Основной цикл: выбираем записи, пока они есть, затем ждем сигнала или интервала опроса
+         */
+        private void runLoop() {
+            while (running) {
+                try {
+                    int processed = processBatch();
+                    if (processed < batchSize) {
+                        signal.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                        signal.drainPermits();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Ошибка обработки outbox канала " + channel, e);
+                    try {
+                        Thread.sleep(pollIntervalMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Обрабатывает одну пачку записей
+         * @return количество обработанных записей
+         */
+        private int processBatch() {
+            List<OutboxMessage> batch = outboxDao.claimBatch(channel, batchSize, leaseSeconds);
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            // Сначала отправляем всю пачку, затем собираем результаты
+            List<CompletableFuture<Boolean>> results = new ArrayList<>(batch.size());
+            for (OutboxMessage message : batch) {
+                try {
+                    results.add(sender.send(message));
+                } catch (Exception e) {
+                    results.add(CompletableFuture.failedFuture(e));
+                }
+            }
+
+            List<Long> delivered = new ArrayList<>(batch.size());
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+            for (int i = 0; i < batch.size(); i++) {
+                OutboxMessage message = batch.get(i);
+                String error;
+                try {
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    if (results.get(i).get(remaining, TimeUnit.NANOSECONDS)) {
+                        delivered.add(message.getId());
+                        continue;
+                    }
+                    error = "Канал " + channel + " вернул ошибку доставки";
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+                } catch (TimeoutException e) {
+                    error = "Таймаут доставки через канал " + channel;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = "Доставка прервана";
+                }
+                handleFailure(message, error);
+            }
+
+            outboxDao.deleteDelivered(delivered);
+            logger.fine("Канал " + channel + ": доставлено " + delivered.size() + " из " + batch.size());
+            return batch.size();
+        }
+
+        private void handleFailure(OutboxMessage message, String error) {
+            if (message.getAttempts() >= maxAttempts) {
+                logger.severe("Уведомление " + message.getId() + " не доставлено после "
+                        + message.getAttempts() + " попыток: " + error);
+                outboxDao.markFailed(message.getId(), error);
+            } else {
+                LocalDateTime nextAttemptAt = LocalDateTime.now()
+                        .plusNanos(TimeUnit.MILLISECONDS.toNanos(backoffMillis(message.getAttempts())));
+                logger.warning("Повторная доставка уведомления " + message.getId() + " в " + nextAttemptAt);
+                outboxDao.scheduleRetry(message.getId(), nextAttemptAt, error);
+            }
+        }
+    }
+}
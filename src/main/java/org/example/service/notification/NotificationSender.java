@@ -0,0 +1,22 @@
+package org.example.service.notification;
+
+import org.example.model.OutboxMessage;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Отправитель уведомлений одного канала.
+ * Используется диспетчером outbox для доставки записей.
+ */
+@FunctionalInterface
+public interface NotificationSender {
+
+    /**
+     * Доставляет уведомление получателю.
+     * Асинхронные каналы возвращают незавершенный future, что позволяет
+     * диспетчеру отправлять пачку записей, не дожидаясь каждого ответа.
+     * @param message запись outbox
+     * @return future с результатом доставки (true - успешно)
+     */
+    CompletableFuture<Boolean> send(OutboxMessage message);
+}
@@ -0,0 +1,354 @@
+package org.example.service.notification;
+
+import org.smpp.Data;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.TCPIPConnection;
+import org.smpp.pdu.BindRequest;
+import org.smpp.pdu.BindResponse;
+import org.smpp.pdu.BindTransciever;
+import org.smpp.pdu.BindTransmitter;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.SubmitSM;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Пул долгоживущих SMPP-сессий.
+ * Каждая сессия:
+ * - один раз выполняет bind (transmitter или transceiver) и переиспользуется для всех SMS
+ * - работает в асинхронном режиме: submit_sm отправляется без ожидания ответа,
+ *   submit_sm_resp сопоставляется с запросом по sequence_number
+ * - ограничивает число неподтвержденных PDU окном (window)
+ * - поддерживает соединение через enquire_link и автоматически переподключается при разрыве
+ */
+public class SmppSessionPool {
+    private static final Logger logger = Logger.getLogger(SmppSessionPool.class.getName());
+
+    // Параметры подключения
+    private final String host;
+    private final int port;
+    private final String systemId;
+    private final String password;
+    private final String systemType;
+    private final boolean transceiver;
+
+    // Параметры пула
+    private final int windowSize;
+    private final long windowWaitMs;
+    private final long responseTimeoutMs;
+    private final long enquireLinkIntervalMs;
+    private final long rebindDelayMs;
+
+    private final List<PooledSession> sessions = new ArrayList<>();
+    private final AtomicInteger nextSession = new AtomicInteger();
+    private final ScheduledExecutorService maintenance;
+
+    /**
+     * Конструктор. Параметры берутся из sms.properties.
+     * @param config загруженная конфигурация SMPP
+     */
+    public SmppSessionPool(Properties config) {
+        this.host = config.getProperty("smpp.host", "localhost");
+        this.port = Integer.parseInt(config.getProperty("smpp.port", "2775"));
+        this.systemId = config.getProperty("smpp.system_id", "");
+        this.password = config.getProperty("smpp.password", "");
+        this.systemType = config.getProperty("smpp.system_type", "OTP");
+        this.transceiver = "transceiver".equalsIgnoreCase(config.getProperty("smpp.bind_mode", "transmitter"));
+        this.windowSize = Integer.parseInt(config.getProperty("smpp.pool.window", "10"));
+        this.windowWaitMs = Long.parseLong(config.getProperty("smpp.pool.window_wait_ms", "5000"));
+        this.responseTimeoutMs = Long.parseLong(config.getProperty("smpp.pool.response_timeout_ms", "10000"));
+        this.enquireLinkIntervalMs = Long.parseLong(config.getProperty("smpp.pool.enquire_link_interval_ms", "30000"));
+        this.rebindDelayMs = Long.parseLong(config.getProperty("smpp.pool.rebind_delay_ms", "5000"));
+
+        int poolSize = Integer.parseInt(config.getProperty("smpp.pool.size", "2"));
+        for (int i = 0; i < poolSize; i++) {
+            sessions.add(new PooledSession(i));
+        }
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "smpp-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запуск пула: bind выполняется в фоне, чтобы недоступный SMSC не блокировал старт сервиса
+     */
+    public void start() {
+        maintenance.scheduleWithFixedDelay(this::maintain, 0, 1, TimeUnit.SECONDS);
+        logger.info("Пул SMPP-сессий запущен: " + sessions.size() + " сессий, окно " + windowSize);
+    }
+
+    /**
+     * Асинхронно отправляет submit_sm через одну из привязанных сессий
+     * @param submitSM сформированный PDU
+     * @return future, завершаемый по получении submit_sm_resp (true при ESME_ROK)
+     */
+    public CompletableFuture<Boolean> submit(SubmitSM submitSM) {
+        int size = sessions.size();
+        int start = Math.floorMod(nextSession.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            PooledSession session = sessions.get((start + i) % size);
+            if (session.bound) {
+                return session.submit(submitSM);
+            }
+        }
+        return CompletableFuture.failedFuture(new IllegalStateException("Нет привязанных SMPP-сессий"));
+    }
+
+    /**
+     * Остановка пула: unbind и закрытие всех сессий
+     */
+    public void close() {
+        maintenance.shutdownNow();
+        for (PooledSession session : sessions) {
+            session.unbindQuietly();
+        }
+        logger.info("Пул SMPP-сессий остановлен");
+    }
+
+    /**
+     * Периодическое обслуживание: переподключение, enquire_link, истечение ожидающих ответов
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        for (PooledSession session : sessions) {
+            try {
+                if (!session.bound) {
+                    if (now - session.lastBindAttempt >= rebindDelayMs) {
+                        session.bind();
+                    }
+                } else {
+                    session.expirePending(now);
+                    session.keepAlive(now);
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Ошибка обслуживания SMPP-сессии " + session.index + ": " + e.getMessage());
+                session.markBroken();
+            }
+        }
+    }
+
+    /**
+     * Ожидающий ответа submit_sm
+     */
+    private static final class PendingSubmit {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final long sentAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Одна SMPP-сессия пула в асинхронном режиме
+     */
+    private final class PooledSession implements ServerPDUEventListener {
+        private final int index;
+        private final Semaphore window = new Semaphore(windowSize);
+        private final Map<Integer, PendingSubmit> pending = new ConcurrentHashMap<>();
+
+        private volatile Session session;
+        private volatile boolean bound;
+        private volatile long lastBindAttempt;
+        private volatile long lastActivity;
+        private volatile long enquireLinkSentAt;
+
+        PooledSession(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Установка соединения и bind в асинхронном режиме
+         */
+        void bind() throws Exception {
+            lastBindAttempt = System.currentTimeMillis();
+            Session newSession = new Session(new TCPIPConnection(host, port));
+
+            BindRequest bindRequest = transceiver ? new BindTransciever() : new BindTransmitter();
+            bindRequest.setSystemId(systemId);
+            bindRequest.setPassword(password);
+            bindRequest.setSystemType(systemType);
+            bindRequest.setInterfaceVersion((byte) 0x34);
+            bindRequest.setAddressRange("");
+
+            BindResponse response = newSession.bind(bindRequest, this);
+            if (response == null || response.getCommandStatus() != Data.ESME_ROK) {
+                closeQuietly(newSession);
+                throw new IllegalStateException("bind отклонен, статус: "
+                        + (response == null ? "нет ответа" : response.getCommandStatus()));
+            }
+
+            session = newSession;
+            lastActivity = System.currentTimeMillis();
+            enquireLinkSentAt = 0;
+            bound = true;
+            logger.info("SMPP-сессия " + index + " привязана к " + host + ":" + port);
+        }
+
+        /**
+         * Отправка submit_sm с учетом окна неподтвержденных PDU
+         */
+        CompletableFuture<Boolean> submit(SubmitSM submitSM) {
+            try {
+                if (!window.tryAcquire(windowWaitMs, TimeUnit.MILLISECONDS)) {
+                    return CompletableFuture.failedFuture(new IllegalStateException("Окно SMPP-сессии заполнено"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            }
+
+            // Номер присваивается до отправки, чтобы ответ не пришел раньше регистрации ожидания
+            submitSM.assignSequenceNumber();
+            PendingSubmit pendingSubmit = new PendingSubmit();
+            pending.put(submitSM.getSequenceNumber(), pendingSubmit);
+            try {
+                Session current = session;
+                synchronized (this) {
+                    current.submit(submitSM);
+                }
+                lastActivity = System.currentTimeMillis();
+            } catch (Exception e) {
+                complete(submitSM.getSequenceNumber(), null, e);
+                markBroken();
+            }
+            return pendingSubmit.future;
+        }
+
+        /**
+         * Обработка PDU, полученных от SMSC (вызывается потоком-приемником OpenSMPP)
+         */
+        @Override
+        public void handleEvent(ServerPDUEvent event) {
+            PDU pdu = event.getPDU();
+            lastActivity = System.currentTimeMillis();
+            try {
+                switch (pdu.getCommandId()) {
+                    case Data.SUBMIT_SM_RESP:
+                    case Data.GENERIC_NACK:
+                        complete(pdu.getSequenceNumber(), pdu.getCommandStatus() == Data.ESME_ROK, null);
+                        if (pdu.getCommandStatus() == Data.ESME_RTHROTTLED) {
+                            logger.warning("SMSC ограничивает скорость отправки (ESME_RTHROTTLED)");
+                        }
+                        break;
+                    case Data.ENQUIRE_LINK_RESP:
+                        enquireLinkSentAt = 0;
+                        break;
+                    case Data.UNBIND:
+                        respond(pdu);
+                        logger.warning("SMSC закрыл SMPP-сессию " + index);
+                        markBroken();
+                        break;
+                    default:
+                        // enquire_link и deliver_sm от SMSC требуют ответа
+                        if (pdu.isRequest()) {
+                            respond(pdu);
+                        }
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Ошибка обработки PDU в SMPP-сессии " + index, e);
+            }
+        }
+
+        private void respond(PDU pdu) throws Exception {
+            Request request = (Request) pdu;
+            if (request.canResponse()) {
+                synchronized (this) {
+                    session.respond(request.getResponse());
+                }
+            }
+        }
+
+        /**
+         * Завершает ожидание ответа и освобождает место в окне
+         */
+        private void complete(int sequenceNumber, Boolean result, Throwable error) {
+            PendingSubmit pendingSubmit = pending.remove(sequenceNumber);
+            if (pendingSubmit == null) {
+                return;
+            }
+            window.release();
+            if (error != null) {
+                pendingSubmit.future.completeExceptionally(error);
+            } else {
+                pendingSubmit.future.complete(result);
+            }
+        }
+
+        /**
+         * Отправка enquire_link при простое и контроль ответа на него
+         */
+        void keepAlive(long now) throws Exception {
+            if (enquireLinkSentAt > 0 && now - enquireLinkSentAt > responseTimeoutMs) {
+                throw new IllegalStateException("нет ответа на enquire_link");
+            }
+            if (enquireLinkSentAt == 0 && now - lastActivity >= enquireLinkIntervalMs) {
+                enquireLinkSentAt = now;
+                synchronized (this) {
+                    session.enquireLink(new EnquireLink());
+                }
+            }
+        }
+
+        /**
+         * Завершает с ошибкой запросы, ответ на которые не пришел вовремя
+         */
+        void expirePending(long now) {
+            pending.forEach((sequenceNumber, pendingSubmit) -> {
+                if (now - pendingSubmit.sentAt > responseTimeoutMs) {
+                    complete(sequenceNumber, null, new IllegalStateException("Таймаут ожидания submit_sm_resp"));
+                }
+            });
+        }
+
+        /**
+         * Помечает сессию как разорванную; переподключение выполнит задача обслуживания
+         */
+        void markBroken() {
+            if (!bound && session == null) {
+                return;
+            }
+            bound = false;
+            Session broken = session;
+            session = null;
+            pending.keySet().forEach(sequenceNumber ->
+                    complete(sequenceNumber, null, new IllegalStateException("SMPP-сессия разорвана")));
+            if (broken != null) {
+                closeQuietly(broken);
+            }
+        }
+
+        void unbindQuietly() {
+            Session current = session;
+            bound = false;
+            if (current != null) {
+                try {
+                    current.unbind();
+                } catch (Exception ignored) {
+                }
+                closeQuietly(current);
+            }
+        }
+
+        private void closeQuietly(Session target) {
+            try {
+                target.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
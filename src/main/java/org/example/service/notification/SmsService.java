@@ -1,41 +1,39 @@
 package org.example.service.notification;
 
-import org.smpp.Connection;
-import org.smpp.Session;
-import org.smpp.TCPIPConnection;
-import org.smpp.pdu.BindTransmitter;
 import org.smpp.pdu.SubmitSM;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Сервис для отправки OTP-кодов по SMS через SMPP-протокол.
- * Использует настройки из файла sms.properties.
+ * Использует пул постоянно привязанных SMPP-сессий (SmppSessionPool)
+ * и настройки из файла sms.properties.
  */
 public class SmsService {
     private static final Logger logger = Logger.getLogger(SmsService.class.getName());
-    // Хост SMPP-сервера (например, localhost или внешний сервер)
-    private final String host;
-    // Порт SMPP-сервера (обычно 2775)
-    private final int port;
-    // Тип системы SMPP (например, "OTP")
-    private final String systemType;
     // Имя отправителя (отображается у получателя)
     private final String sourceAddress;
+    // Максимальное время ожидания подтверждения при синхронной отправке
+    private final long sendTimeoutMs;
+    // Пул SMPP-сессий
+    private final SmppSessionPool sessionPool;
 
     /**
-     * Конструктор. Загружает конфигурацию SMPP из файла sms.properties.
+     * Конструктор. Загружает конфигурацию SMPP из файла sms.properties
+     * и запускает пул сессий.
      */
     public SmsService() {
         Properties config = loadConfig();
-        this.host = config.getProperty("smpp.host", "localhost");
-        this.port = Integer.parseInt(config.getProperty("smpp.port", "2775"));
-        this.systemType = config.getProperty("smpp.system_type", "OTP");
         this.sourceAddress = config.getProperty("smpp.source_addr", "OTPService");
+        this.sendTimeoutMs = Long.parseLong(config.getProperty("smpp.send_timeout_ms", "15000"));
+        this.sessionPool = new SmppSessionPool(config);
+        this.sessionPool.start();
     }
 
     /**
@@ -55,50 +53,56 @@ public class SmsService {
     }
 
     /**
-     * Отправляет SMS с OTP-кодом на указанный номер через SMPP.
+     * Отправляет SMS с OTP-кодом на указанный номер и ожидает подтверждения SMSC.
      * @param destination номер получателя (в формате международного номера)
      * @param code OTP-код для отправки
      * @return true если отправка успешна, иначе false
      */
     public boolean sendCode(String destination, String code) {
-        Connection connection = null;
-        Session session = null;
         try {
-            // Устанавливаем TCP/IP соединение с SMPP сервером
-            connection = new TCPIPConnection(host, port);
-            session = new Session(connection);
-
-            // Формируем запрос на привязку (bind) в режиме передатчика (transmitter)
-            BindTransmitter bindRequest = new BindTransmitter();
-            bindRequest.setSystemId(""); // SystemId и Password могут быть заданы при необходимости
-            bindRequest.setPassword("");
-            bindRequest.setSystemType(systemType);
-            bindRequest.setInterfaceVersion((byte) 0x34);
-            bindRequest.setAddressRange("");
-
-            // Осуществляем bind к SMPP серверу
-            session.bind(bindRequest);
+            return sendCodeAsync(destination, code).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Ошибка отправки SMS: " + e.getMessage());
+            return false;
+        }
+    }
 
-            // Формируем и отправляем SMS
-            SubmitSM submitSM = new SubmitSM();
+    /**
+     * Асинхронно отправляет SMS с OTP-кодом.
+     * Результат становится известен по получении submit_sm_resp.
+     * @param destination номер получателя
+     * @param code OTP-код для отправки
+     * @return future с результатом отправки (true - SMSC принял сообщение)
+     */
+    public CompletableFuture<Boolean> sendCodeAsync(String destination, String code) {
+        SubmitSM submitSM = new SubmitSM();
+        try {
             submitSM.setSourceAddr(sourceAddress); // Имя отправителя
             submitSM.setDestAddr(destination);     // Номер получателя
             submitSM.setShortMessage("Код: " + code);
-
-            session.submit(submitSM);
-            logger.info("SMS отправлено на номер: " + destination);
-            return true;
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Ошибка отправки SMS: " + e.getMessage());
-            return false;
-        } finally {
-            // Корректно закрываем сессию и соединение
-            if (session != null) {
-                try { session.unbind(); session.close(); } catch (Exception ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (Exception ignored) {}
-            }
+            logger.log(Level.SEVERE, "Ошибка формирования SMS: " + e.getMessage());
+            return CompletableFuture.completedFuture(false);
         }
+
+        return sessionPool.submit(submitSM).whenComplete((accepted, error) -> {
+            if (error != null) {
+                logger.log(Level.SEVERE, "Ошибка отправки SMS: " + error.getMessage());
+            } else if (accepted) {
+                logger.info("SMS отправлено на номер: " + destination);
+            } else {
+                logger.warning("SMSC отклонил SMS на номер: " + destination);
+            }
+        });
+    }
+
+    /**
+     * Остановка пула SMPP-сессий
+     */
+    public void close() {
+        sessionPool.close();
     }
 }
@@ -0,0 +1,204 @@
+package org.example.service.notification;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Пул подключенных SMTP-соединений (javax.mail.Transport).
+ * Соединение переиспользуется для многих писем вместо connect/EHLO/QUIT на каждое:
+ * - перед выдачей долго простаивавшее соединение проверяется командой NOOP
+ * - при сбое соединения (ввод-вывод, соединение закрыто сервером) оно закрывается,
+ *   письмо повторяется на новом соединении; отказ сервера принять адресатов
+ *   (SendFailedException) не повторяется, соединение возвращается в пул
+ * - после заданного числа писем соединение закрывается и создается заново
+ * Пул зависит только от переданной почтовой сессии, поэтому для проверки его можно направить
+ * на локальный SMTP-сервер (MailHog из docker-compose или встроенный в процесс сервер),
+ * указав в сессии mail.smtp.host и mail.smtp.port.
+ */
+public class SmtpTransportPool {
+    private static final Logger logger = Logger.getLogger(SmtpTransportPool.class.getName());
+
+    private final Session session;
+    private final int maxSize;
+    private final int maxMessagesPerConnection;
+    private final long healthCheckIdleMs;
+    private final long borrowTimeoutMs;
+
+    private final BlockingQueue<PooledTransport> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @param session почтовая сессия с параметрами SMTP-сервера
+     * @param maxSize максимальное число соединений
+     * @param maxMessagesPerConnection максимальное число писем на одно соединение
+     * @param healthCheckIdleMs простой, после которого соединение проверяется NOOP
+     * @param borrowTimeoutMs максимальное ожидание свободного соединения
+     */
+    public SmtpTransportPool(Session session, int maxSize, int maxMessagesPerConnection,
+                             long healthCheckIdleMs, long borrowTimeoutMs) {
+        this.session = session;
+        this.maxSize = maxSize;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.healthCheckIdleMs = healthCheckIdleMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idle = new LinkedBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Отправляет письмо через соединение из пула.
+     * При сбое соединения выполняется одна повторная попытка на новом соединении.
+     * Другие ошибки не повторяются, чтобы письмо не было отправлено дважды.
+     * @param message подготовленное письмо
+     */
+    public void send(Message message) throws MessagingException {
+        message.saveChanges();
+        PooledTransport pooled = borrow();
+        try {
+            pooled.transport.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException e) {
+            // Сервер отклонил адресатов или письмо, соединение исправно
+            release(pooled);
+            throw e;
+        } catch (MessagingException | IllegalStateException e) {
+            discard(pooled);
+            if (!isConnectionFailure(e)) {
+                throw e;
+            }
+            logger.log(Level.WARNING, "Сбой SMTP-соединения, повтор на новом соединении: " + e.getMessage());
+            pooled = borrow();
+            try {
+                pooled.transport.sendMessage(message, message.getAllRecipients());
+            } catch (SendFailedException retryError) {
+                release(pooled);
+                throw retryError;
+            } catch (MessagingException | IllegalStateException retryError) {
+                discard(pooled);
+                throw retryError;
+            }
+        }
+        release(pooled);
+    }
+
+    /**
+     * Сбой соединения: транспорт уже закрыт (IllegalStateException "Not connected")
+     * или причиной ошибки является ошибка ввода-вывода
+     */
+    private static boolean isConnectionFailure(Exception e) {
+        if (e instanceof IllegalStateException) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; ) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+            Throwable next = cause instanceof MessagingException
+                    ? ((MessagingException) cause).getNextException()
+                    : cause.getCause();
+            cause = next != cause ? next : null;
+        }
+        return false;
+    }
+
+    /**
+     * Закрывает все простаивающие соединения
+     */
+    public void close() {
+        closed = true;
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Выдает подключенное и проверенное соединение
+     */
+    private PooledTransport borrow() throws MessagingException {
+        if (closed) {
+            throw new MessagingException("Пул SMTP-соединений закрыт");
+        }
+        PooledTransport pooled = idle.poll();
+        if (pooled == null) {
+            if (created.incrementAndGet() <= maxSize) {
+                return open();
+            }
+            created.decrementAndGet();
+            try {
+                pooled = idle.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessagingException("Ожидание SMTP-соединения прервано", e);
+            }
+            if (pooled == null) {
+                throw new MessagingException("Нет свободных SMTP-соединений");
+            }
+        }
+
+        // isConnected() у SMTPTransport отправляет NOOP
+        boolean stale = System.currentTimeMillis() - pooled.lastUsed > healthCheckIdleMs;
+        if (stale && !pooled.transport.isConnected()) {
+            logger.fine("SMTP-соединение не прошло проверку NOOP, переподключение");
+            discard(pooled);
+            created.incrementAndGet();
+            return open();
+        }
+        return pooled;
+    }
+
+    /**
+     * Открывает новое соединение (счетчик created уже увеличен вызывающим кодом)
+     */
+    private PooledTransport open() throws MessagingException {
+        try {
+            Transport transport = session.getTransport("smtp");
+            transport.connect();
+            return new PooledTransport(transport);
+        } catch (MessagingException | RuntimeException e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает соединение в пул или закрывает его по достижении лимита писем
+     */
+    private void release(PooledTransport pooled) {
+        pooled.messagesSent++;
+        pooled.lastUsed = System.currentTimeMillis();
+        if (closed || pooled.messagesSent >= maxMessagesPerConnection || !idle.offer(pooled)) {
+            discard(pooled);
+        }
+    }
+
+    private void discard(PooledTransport pooled) {
+        created.decrementAndGet();
+        try {
+            pooled.transport.close();
+        } catch (MessagingException ignored) {
+        }
+    }
+
+    /**
+     * Соединение пула со счетчиком отправленных писем
+     */
+    private static final class PooledTransport {
+        final Transport transport;
+        int messagesSent;
+        long lastUsed = System.currentTimeMillis();
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
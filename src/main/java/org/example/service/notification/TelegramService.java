@@ -1,35 +1,60 @@
 package org.example.service.notification;
 
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Сервис для отправки OTP-кодов через Telegram Bot API.
- * Использует настройки из файла telegram.properties.
+ * Использует один общий неблокирующий HTTP-клиент с пулом keep-alive соединений
+ * и настройки из файла telegram.properties.
  */
 public class TelegramService {
     private static final Logger logger = Logger.getLogger(TelegramService.class.getName());
     private final String telegramApiUrl; // URL для отправки сообщений через Telegram Bot API
     private final String botToken;       // Токен Telegram-бота
+    private final Duration requestTimeout; // Таймаут ожидания ответа Telegram
+    private final ExecutorService executor; // Потоки для обработки ответов клиента
+    private final HttpClient httpClient;  // Общий HTTP-клиент (пул соединений внутри)
 
     /**
-     * Конструктор. Загружает настройки из файла telegram.properties.
-     * Если файл не найден, используется значение по умолчанию.
+     * Конструктор. Загружает настройки из файла telegram.properties и создает HTTP-клиент.
+     * Если файл не найден, используются значения по умолчанию.
+     * Базовый URL API настраивается, чтобы в тестах можно было использовать локальную заглушку.
      */
     public TelegramService() {
         Properties config = loadConfig();
         this.botToken = config.getProperty("telegram.bot_token", "your_bot_token");
-        this.telegramApiUrl = "https://api.telegram.org/bot" + botToken + "/sendMessage";
+        String baseUrl = config.getProperty("telegram.api_base_url", "https://api.telegram.org");
+        this.telegramApiUrl = stripTrailingSlash(baseUrl) + "/bot" + botToken + "/sendMessage";
+        this.requestTimeout = Duration.ofMillis(
+                Long.parseLong(config.getProperty("telegram.request_timeout_ms", "10000")));
+
+        int threads = Integer.parseInt(config.getProperty("telegram.client_threads", "2"));
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "telegram-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.valueOf(config.getProperty("telegram.http_version", "HTTP_2")))
+                .connectTimeout(Duration.ofMillis(
+                        Long.parseLong(config.getProperty("telegram.connect_timeout_ms", "5000"))))
+                .executor(executor)
+                .build();
     }
 
     /**
@@ -51,44 +76,74 @@ public class TelegramService {
     }
 
     /**
-     * Отправляет OTP-код пользователю через Telegram.
+     * Отправляет OTP-код пользователю через Telegram и ожидает ответа API.
      * @param chatId chat_id пользователя Telegram (строка)
      * @param code   OTP-код для отправки
      * @return true если сообщение отправлено успешно, иначе false
      */
     public boolean sendCode(String chatId, String code) {
+        try {
+            return sendCodeAsync(chatId, code).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Ошибка при отправке сообщения в Telegram", e);
+            return false;
+        }
+    }
+
+    /**
+     * Асинхронно отправляет OTP-код пользователю через Telegram.
+     * @param chatId chat_id пользователя Telegram (строка)
+     * @param code   OTP-код для отправки
+     * @return future с результатом (true если Telegram вернул 200 OK)
+     */
+    public CompletableFuture<Boolean> sendCodeAsync(String chatId, String code) {
         // Формируем текст сообщения
-        String message = String.format("Ваш код подтверждения: %s", code);
+        String message = "Ваш код подтверждения: " + code;
         // Формируем URL для запроса к Telegram Bot API
-        String url = String.format("%s?chat_id=%s&text=%s",
-                telegramApiUrl,
-                urlEncode(chatId),
-                urlEncode(message));
+        String url = telegramApiUrl + "?chat_id=" + urlEncode(chatId) + "&text=" + urlEncode(message);
         // Отправляем HTTP-запрос
         return sendTelegramRequest(url);
     }
 
     /**
-     * Выполняет HTTP GET-запрос к Telegram Bot API для отправки сообщения.
+     * Выполняет неблокирующий HTTP GET-запрос к Telegram Bot API для отправки сообщения.
      * @param url сформированный URL для отправки сообщения
-     * @return true если Telegram вернул 200 OK, иначе false
+     * @return future: true если Telegram вернул 200 OK, иначе false
      */
-    private boolean sendTelegramRequest(String url) {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(url);
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                int statusCode = response.getStatusLine().getStatusCode();
-                if (statusCode != 200) {
-                    logger.warning("Ошибка Telegram API. Код ответа: " + statusCode);
-                    return false;
-                } else {
+    private CompletableFuture<Boolean> sendTelegramRequest(String url) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    int statusCode = response.statusCode();
+                    if (statusCode != 200) {
+                        logger.warning("Ошибка Telegram API. Код ответа: " + statusCode);
+                        return false;
+                    }
                     logger.info("Сообщение Telegram успешно отправлено");
                     return true;
-                }
-            }
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Ошибка при отправке сообщения в Telegram", e);
-            return false;
+                })
+                .exceptionally(e -> {
+                    logger.log(Level.SEVERE, "Ошибка при отправке сообщения в Telegram", e);
+                    return false;
+                });
+    }
+
+    /**
+     * Остановка потоков HTTP-клиента
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -100,4 +155,8 @@ public class TelegramService {
     private static String urlEncode(String value) {
         return URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
 }
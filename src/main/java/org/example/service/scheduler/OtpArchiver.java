@@ -0,0 +1,210 @@
+package org.example.service.scheduler;
+
+import org.example.archive.OtpArchive;
+import org.example.archive.OtpSegmentWriter;
+import org.example.dao.OtpDao;
+import org.example.dao.OtpPartitionDao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Периодическая архивация OTP-кодов (опционально, включается в archive.properties).
+ * Архивируются секции таблицы otps целиком: секции, все строки которых старше
+ * archive.min_age_hours, читаются из БД курсором и записываются в сжатые столбцовые
+ * сегменты (см. OtpArchive), после чего секция отмечается архивированной в БД.
+ * Строки из БД архиватор не удаляет: отмеченные секции удаляет по сроку хранения
+ * OtpPartitionMaintenance (DETACH + DROP), неархивированные секции не удаляются.
+ * Если запись прервалась до отметки, сегменты секции удаляются и она архивируется заново.
+ */
+public class OtpArchiver {
+    private static final Logger logger = Logger.getLogger(OtpArchiver.class.getName());
+
+    private final OtpDao otpDao;
+    private final OtpPartitionDao partitionDao;
+    private final OtpArchive archive;
+    private final ScheduledExecutorService scheduler;
+    private final boolean enabled;
+    private final long minAgeHours;
+    private final int segmentRows;
+    private final int fetchSize;
+    private final long intervalMinutes;
+
+    /**
+     * Конструктор. Загружает настройки из archive.properties.
+     * @param otpDao DAO для работы с OTP-кодами
+     * @param partitionDao DAO секций таблицы otps
+     */
+    public OtpArchiver(OtpDao otpDao, OtpPartitionDao partitionDao) {
+        this.otpDao = otpDao;
+        this.partitionDao = partitionDao;
+        Properties config = loadConfig();
+        this.enabled = Boolean.parseBoolean(config.getProperty("archive.enabled", "false"));
+        this.archive = new OtpArchive(Path.of(config.getProperty("archive.dir", "archive/otps")));
+        this.minAgeHours = Long.parseLong(config.getProperty("archive.min_age_hours", "48"));
+        this.segmentRows = Integer.parseInt(config.getProperty("archive.segment_rows", "200000"));
+        this.fetchSize = Integer.parseInt(config.getProperty("archive.fetch_size", "10000"));
+        this.intervalMinutes = Long.parseLong(config.getProperty("archive.interval_minutes", "60"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Загружает параметры из файла archive.properties.
+     * Если файл не найден - архивация выключена.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("archive.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации архивации OTP", e);
+        }
+        return props;
+    }
+
+    /**
+     * Архив OTP-кодов (для чтения)
+     */
+    public OtpArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Запуск периодической архивации (первый проход - сразу)
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::archiveOldCodes, 0, intervalMinutes, TimeUnit.MINUTES);
+        logger.info("Архивация OTP-кодов запущена");
+    }
+
+    /**
+     * Остановка: текущий проход завершается после архивации очередной секции
+     */
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    private void archiveOldCodes() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(minAgeHours);
+        try {
+            if (!recoverPending()) {
+                return;
+            }
+            List<String> partitions = partitionDao.findUnarchivedBefore(cutoff);
+            if (partitions == null) {
+                return;
+            }
+
+            long total = 0;
+            for (String partition : partitions) {
+                if (scheduler.isShutdown()) {
+                    break;
+                }
+                long rows = archivePartition(partition);
+                if (rows < 0) {
+                    break;
+                }
+                total += rows;
+                logger.info("Архивирована секция " + partition + ", строк: " + rows);
+            }
+            if (total > 0) {
+                logger.info("Архивировано OTP-кодов: " + total);
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Ошибка при архивации OTP-кодов", e);
+        }
+    }
+
+    /**
+     * Разбирает сегменты, оставшиеся .pending после сбоя: сегменты отмеченных секций
+     * завершаются, остальные удаляются (секция будет архивирована заново)
+     * @return false, если архивированные секции прочитать не удалось
+     */
+    private boolean recoverPending() throws IOException {
+        List<Path> pendingSegments = archive.pendingSegments();
+        if (pendingSegments.isEmpty()) {
+            return true;
+        }
+        Set<String> archived = partitionDao.findArchivedPartitions();
+        if (archived == null) {
+            return false;
+        }
+        for (Path pending : pendingSegments) {
+            if (archived.contains(OtpArchive.partitionOf(pending))) {
+                archive.complete(pending);
+            } else {
+                archive.delete(pending);
+                logger.warning("Удален сегмент неархивированной секции " + pending.getFileName());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Записывает строки секции в сегменты и отмечает секцию архивированной
+     * @return количество архивированных строк или -1 при ошибке
+     */
+    private long archivePartition(String partition) throws IOException {
+        List<Path> published = new ArrayList<>();
+        OtpSegmentWriter[] writer = {archive.createSegment(partition)};
+        long rows;
+        try {
+            rows = otpDao.forEachInPartition(partition, fetchSize, otp -> {
+                try {
+                    if (writer[0].getRows() >= segmentRows) {
+                        published.add(archive.publish(writer[0]));
+                        writer[0] = archive.createSegment(partition);
+                    }
+                    writer[0].append(otp);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            abandon(writer[0], published);
+            throw e.getCause();
+        }
+        if (rows < 0) {
+            abandon(writer[0], published);
+            return -1;
+        }
+        if (writer[0].getRows() > 0) {
+            published.add(archive.publish(writer[0]));
+        } else {
+            archive.discard(writer[0]);
+        }
+
+        if (!partitionDao.markArchived(partition, rows)) {
+            // Сегменты остаются .pending и разбираются при следующем запуске
+            return -1;
+        }
+        for (Path pending : published) {
+            archive.complete(pending);
+        }
+        return rows;
+    }
+
+    private void abandon(OtpSegmentWriter writer, List<Path> published) throws IOException {
+        archive.discard(writer);
+        for (Path pending : published) {
+            archive.delete(pending);
+        }
+    }
+}
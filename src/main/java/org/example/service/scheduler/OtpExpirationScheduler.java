@@ -3,89 +3,222 @@ package org.example.service.scheduler;
 import org.example.dao.OtpDao;
 import org.example.model.Otp;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Планировщик для автоматической проверки и пометки истёкших OTP-кодов.
- * Периодически запускает задачу, которая ищет все активные, но уже просроченные OTP,
- * и обновляет их статус на "EXPIRED".
+ * Планировщик для автоматической пометки истёкших OTP-кодов.
+ * Каждый сгенерированный OTP регистрируется в колесе таймеров (TimingWheel) по времени истечения,
+ * поэтому код переходит в EXPIRED с точностью до тика колеса, без сканирования таблицы.
+ * Сработавшие таймеры накапливаются и записываются в БД пачками (micro-batch).
+ * При запуске колесо восстанавливается из активных строк БД.
+ * Периодический проход по таблице остается как страховка (например, для кодов,
+ * созданных другими экземплярами приложения), но выполняется редко.
+ * Настройки берутся из файла expiration.properties.
  */
 public class OtpExpirationScheduler {
     // Логгер для вывода информации и ошибок
     private static final Logger logger = Logger.getLogger(OtpExpirationScheduler.class.getName());
-    // Задержка перед первым запуском (секунд)
-    private static final int INITIAL_DELAY_SECONDS = 0;
-    // Интервал между проверками (секунд)
-    private static final int CHECK_INTERVAL_SECONDS = 60;
+    // Размер порции, обновляемой одним запросом страховочного прохода
+    private static final int CHUNK_SIZE = 5000;
 
     // DAO для доступа к OTP-кодам
     private final OtpDao otpDao;
-    // Планировщик задач (один поток)
+    // Планировщик задач: сброс пачек, восстановление колеса и страховочный проход
     private final ScheduledExecutorService scheduler;
+    // Колесо таймеров с идентификаторами OTP
+    private final TimingWheel<Long> wheel;
+    // Идентификаторы сработавших таймеров, ожидающие записи в БД
+    private final Queue<Long> expiredIds = new ConcurrentLinkedQueue<>();
+
+    // Максимальный размер пачки идентификаторов в одном UPDATE
+    private final int flushBatchSize;
+    // Интервал сброса пачек (мс)
+    private final long flushIntervalMs;
+    // Интервал страховочного прохода по таблице (секунд)
+    private final long sweepIntervalSeconds;
+    // Ограничение длительности одного прохода, чтобы он не перекрывал следующий интервал
+    private final long maxSweepMillis;
+    // Размер порции чтения при восстановлении колеса
+    private final int rebuildFetchSize;
 
     /**
-     * Конструктор с внедрением DAO.
+     * Конструктор с внедрением DAO. Загружает настройки из expiration.properties.
      * @param otpDao DAO для работы с OTP-кодами
      */
     public OtpExpirationScheduler(OtpDao otpDao) {
         this.otpDao = otpDao;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        Properties config = loadConfig();
+        this.flushBatchSize = Integer.parseInt(config.getProperty("expiration.flush.batch_size", "1000"));
+        this.flushIntervalMs = Long.parseLong(config.getProperty("expiration.flush.interval_ms", "200"));
+        this.sweepIntervalSeconds = Long.parseLong(config.getProperty("expiration.sweep.interval_seconds", "600"));
+        this.maxSweepMillis = TimeUnit.SECONDS.toMillis(sweepIntervalSeconds) / 2;
+        this.rebuildFetchSize = Integer.parseInt(config.getProperty("expiration.rebuild.fetch_size", "10000"));
+        this.wheel = new TimingWheel<>(
+                "otp-expiration-wheel",
+                Long.parseLong(config.getProperty("expiration.wheel.tick_ms", "100")),
+                Integer.parseInt(config.getProperty("expiration.wheel.size", "512")),
+                Integer.parseInt(config.getProperty("expiration.wheel.levels", "4")),
+                expiredIds::addAll);
+        this.scheduler = Executors.newScheduledThreadPool(2);
+    }
+
+    /**
+     * Загружает параметры из файла expiration.properties.
+     * Если файл не найден - используются значения по умолчанию.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("expiration.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации планировщика истечения OTP", e);
+        }
+        return props;
     }
 
     /**
-     * Запуск планировщика.
-     * Периодически вызывает метод checkExpiredCodes().
+     * Запуск планировщика: колесо таймеров, восстановление из БД,
+     * периодический сброс пачек и страховочный проход.
      */
     public void start() {
+        wheel.start();
+        scheduler.execute(this::rebuildFromDatabase);
+        scheduler.scheduleWithFixedDelay(
+                this::flushExpired,
+                flushIntervalMs,
+                flushIntervalMs,
+                TimeUnit.MILLISECONDS
+        );
         scheduler.scheduleAtFixedRate(
                 this::checkExpiredCodes,
-                INITIAL_DELAY_SECONDS,
-                CHECK_INTERVAL_SECONDS,
+                sweepIntervalSeconds,
+                sweepIntervalSeconds,
                 TimeUnit.SECONDS
         );
         logger.info("Планировщик проверки истёкших OTP-кодов запущен");
     }
 
     /**
-     * Основная задача: найти все активные, но уже просроченные OTP-коды,
-     * и пометить их как EXPIRED.
+     * Регистрирует OTP-код в колесе таймеров по времени его истечения
+     * @param otp сохраненный OTP-код
+     */
+    public void track(Otp otp) {
+        long deadline = otp.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        wheel.schedule(deadline, otp.getId());
+    }
+
+    /**
+     * Восстанавливает колесо таймеров из активных OTP-кодов в БД.
+     * Уже просроченные коды срабатывают сразу на ближайшем тике.
+     */
+    private void rebuildFromDatabase() {
+        long start = System.nanoTime();
+        long loaded = otpDao.forEachActive(rebuildFetchSize, this::track);
+        if (loaded < 0) {
+            logger.warning("Не удалось восстановить колесо таймеров, истечение обеспечит страховочный проход");
+            return;
+        }
+        logger.info("Колесо таймеров восстановлено: " + loaded + " активных OTP-кодов за "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " мс");
+    }
+
+    /**
+     * Записывает накопленные сработавшие таймеры в БД пачками
+     */
+    private void flushExpired() {
+        try {
+            List<Long> batch = new ArrayList<>(Math.min(flushBatchSize, 1024));
+            Long id;
+            while (true) {
+                while (batch.size() < flushBatchSize && (id = expiredIds.poll()) != null) {
+                    batch.add(id);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                int updated = otpDao.expireByIds(batch);
+                if (updated < 0) {
+                    // Строки останутся ACTIVE до страховочного прохода
+                    logger.warning("Не удалось пометить истёкшими " + batch.size() + " OTP-кодов");
+                } else if (updated > 0) {
+                    logger.fine("Помечено истёкшими " + updated + " OTP-кодов");
+                }
+                batch.clear();
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Ошибка при записи истёкших OTP-кодов", e);
+        }
+    }
+
+    /**
+     * Страховочный проход: пометить все активные, но уже просроченные OTP-коды как EXPIRED.
+     * Обновление выполняется порциями на стороне БД (без загрузки строк в приложение),
+     * пока не останется просроченных кодов или не истечет лимит времени прохода.
      */
     private void checkExpiredCodes() {
         try {
             logger.info("Запуск проверки истёкших OTP-кодов");
-            // Получаем список всех активных, но уже истёкших OTP-кодов
-            List<Otp> expiredCodes = otpDao.findExpiredActiveCodes();
+            long sweepStart = System.nanoTime();
+            long total = 0;
+            int chunks = 0;
 
-            for (Otp otp : expiredCodes) {
-                // Обновляем статус на "EXPIRED"
-                boolean updated = otpDao.updateStatus(otp.getId(), "EXPIRED");
-                if (updated) {
-                    logger.info("OTP-код помечен как истёкший: " + otp.getId());
-                } else {
-                    logger.warning("Не удалось обновить статус OTP-кода: " + otp.getId());
+            while (true) {
+                long chunkStart = System.nanoTime();
+                int updated = otpDao.expireActiveChunk(CHUNK_SIZE);
+                if (updated < 0) {
+                    logger.warning("Проход прерван из-за ошибки обновления статусов");
+                    break;
+                }
+                long chunkMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStart);
+                if (updated > 0) {
+                    chunks++;
+                    total += updated;
+                    logger.info("Порция " + chunks + ": помечено истёкшими " + updated
+                            + " OTP-кодов за " + chunkMillis + " мс");
+                }
+                if (updated < CHUNK_SIZE) {
+                    break;
+                }
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sweepStart) >= maxSweepMillis) {
+                    logger.warning("Достигнут лимит времени прохода, оставшиеся коды будут обработаны позже");
+                    break;
                 }
             }
 
-            logger.info("Обработано истёкших OTP-кодов: " + expiredCodes.size());
+            logger.info("Обработано истёкших OTP-кодов: " + total + " (порций: " + chunks + ", "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sweepStart) + " мс)");
         } catch (Exception e) {
             logger.severe("Ошибка при проверке истёкших OTP-кодов: " + e.getMessage());
         }
     }
 
     /**
-     * Остановка планировщика и корректное завершение работы потока.
+     * Остановка планировщика и корректное завершение работы потоков.
+     * Уже сработавшие таймеры записываются в БД перед остановкой.
      */
     public void stop() {
+        wheel.stop();
         scheduler.shutdown();
         try {
             // Ожидаем завершения задач, если не получилось - принудительно останавливаем
             if (!scheduler.awaitTermination(60, TimeUnit.SECONDS)) {
                 scheduler.shutdownNow();
             }
+            flushExpired();
             logger.info("Планировщик проверки истёкших OTP-кодов остановлен");
         } catch (InterruptedException e) {
             scheduler.shutdownNow();
@@ -0,0 +1,94 @@
+package org.example.service.scheduler;
+
+import org.example.dao.OtpPartitionDao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Периодическое обслуживание секций таблицы otps:
+ * - заранее создает суточные секции на partition.days_ahead дней вперед
+ * - удаляет секции старше partition.retention_days целиком (DETACH + DROP)
+ *   вместо удаления строк, поэтому хранение не нагружает VACUUM
+ * - удаляются только секции, отмеченные архивированными (см. OtpArchiver): пока архивация
+ *   выключена или отстает, старые секции остаются в БД
+ * Первый запуск выполняется сразу при старте, до начала приема запросов.
+ * Настройки берутся из файла partition.properties.
+ */
+public class OtpPartitionMaintenance {
+    private static final Logger logger = Logger.getLogger(OtpPartitionMaintenance.class.getName());
+
+    private final OtpPartitionDao partitionDao;
+    private final ScheduledExecutorService scheduler;
+    private final int daysAhead;
+    private final int retentionDays;
+    private final long intervalMinutes;
+
+    /**
+     * Конструктор с внедрением DAO. Загружает настройки из partition.properties.
+     * @param partitionDao DAO секций таблицы otps
+     */
+    public OtpPartitionMaintenance(OtpPartitionDao partitionDao) {
+        this.partitionDao = partitionDao;
+        Properties config = loadConfig();
+        this.daysAhead = Integer.parseInt(config.getProperty("partition.days_ahead", "7"));
+        this.retentionDays = Integer.parseInt(config.getProperty("partition.retention_days", "30"));
+        this.intervalMinutes = Long.parseLong(config.getProperty("partition.interval_minutes", "60"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Загружает параметры из файла partition.properties.
+     * Если файл не найден - используются значения по умолчанию.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("partition.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации секций otps", e);
+        }
+        return props;
+    }
+
+    /**
+     * Выполняет обслуживание сразу и запускает периодическое обслуживание
+     */
+    public void start() {
+        maintain();
+        scheduler.scheduleAtFixedRate(this::maintain, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        logger.info("Обслуживание секций otps запущено");
+    }
+
+    /**
+     * Остановка периодического обслуживания
+     */
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    private void maintain() {
+        try {
+            LocalDate today = LocalDate.now();
+            int created = partitionDao.createDailyPartitions(today, daysAhead + 1);
+            if (created > 0) {
+                logger.info("Создано секций otps: " + created);
+            }
+            int dropped = partitionDao.dropPartitionsBefore(today.minusDays(retentionDays).atStartOfDay());
+            if (dropped > 0) {
+                logger.info("Удалено секций otps по сроку хранения: " + dropped);
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Ошибка при обслуживании секций otps", e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.service.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Иерархическое хешированное колесо таймеров.
+ * Добавление таймера - O(1): он попадает в очередь добавления, которую разбирает поток колеса.
+ * Колесо состоит из нескольких уровней по wheelSize ячеек: ячейка уровня L охватывает
+ * tickMs * wheelSize^L миллисекунд. Когда нижний уровень совершает полный оборот,
+ * таймеры очередной ячейки верхнего уровня перераспределяются вниз (каскад).
+ * Сработавшие таймеры передаются обработчику пачкой на каждом тике.
+ * @param <T> тип полезной нагрузки таймера
+ */
+public class TimingWheel<T> {
+    private static final Logger logger = Logger.getLogger(TimingWheel.class.getName());
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final int levels;
+    private final Consumer<List<T>> expirationHandler;
+
+    // buckets[level][slot]
+    private final ArrayDeque<Timer<T>>[][] buckets;
+    // wheelSize^level в тиках
+    private final long[] levelSpan;
+    private final Queue<Timer<T>> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Thread ticker;
+    private volatile boolean running;
+    private long currentTick;
+
+    /**
+     * @param name имя потока колеса
+     * @param tickMs разрешение колеса (длительность тика)
+     * @param wheelSize число ячеек на уровне
+     * @param levels число уровней
+     * @param expirationHandler обработчик сработавших таймеров (вызывается потоком колеса)
+     */
+    public TimingWheel(String name, long tickMs, int wheelSize, int levels, Consumer<List<T>> expirationHandler) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.levels = levels;
+        this.expirationHandler = expirationHandler;
+        this.buckets = newBuckets(levels, wheelSize);
+        this.levelSpan = new long[levels + 1];
+        levelSpan[0] = 1;
+        for (int level = 1; level <= levels; level++) {
+            levelSpan[level] = levelSpan[level - 1] * wheelSize;
+        }
+        this.ticker = new Thread(this::runLoop, name);
+        this.ticker.setDaemon(true);
+    }
+
+    /**
+     * Создает массив ячеек: массив параметризованного типа создается только через приведение
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> ArrayDeque<Timer<T>>[][] newBuckets(int levels, int wheelSize) {
+        return (ArrayDeque<Timer<T>>[][]) new ArrayDeque[levels][wheelSize];
+    }
+
+    /**
+     * Запуск потока колеса
+     */
+    public void start() {
+        currentTick = System.currentTimeMillis() / tickMs;
+        running = true;
+        ticker.start();
+    }
+
+    /**
+     * Остановка потока колеса. Несработавшие таймеры отбрасываются.
+     */
+    public void stop() {
+        running = false;
+        ticker.interrupt();
+    }
+
+    /**
+     * Регистрирует таймер. Может вызываться из любого потока.
+     * @param deadlineMs момент срабатывания (epoch millis)
+     * @param payload полезная нагрузка
+     */
+    public void schedule(long deadlineMs, T payload) {
+        pendingAdds.offer(new Timer<>(deadlineMs, payload));
+        size.incrementAndGet();
+    }
+
+    /**
+     * Количество ожидающих таймеров
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private void runLoop() {
+        List<T> expired = new ArrayList<>();
+        while (running) {
+            try {
+                long nowTick = System.currentTimeMillis() / tickMs;
+                while (currentTick <= nowTick) {
+                    drainPendingAdds(expired);
+                    advance(expired);
+                }
+                if (!expired.isEmpty()) {
+                    size.addAndGet(-expired.size());
+                    expirationHandler.accept(expired);
+                    expired = new ArrayList<>();
+                }
+                long sleepMs = (currentTick * tickMs) - System.currentTimeMillis();
+                if (sleepMs > 0) {
+                    TimeUnit.MILLISECONDS.sleep(sleepMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Ошибка в потоке колеса таймеров", e);
+            }
+        }
+    }
+
+    private void drainPendingAdds(List<T> expired) {
+        Timer<T> timer;
+        while ((timer = pendingAdds.poll()) != null) {
+            place(timer, expired);
+        }
+    }
+
+    /**
+     * Обрабатывает текущий тик: каскад верхних уровней и срабатывание ячейки нижнего уровня
+     */
+    private void advance(List<T> expired) {
+        for (int level = levels - 1; level >= 1; level--) {
+            if (currentTick % levelSpan[level] == 0) {
+                int slot = (int) ((currentTick / levelSpan[level]) % wheelSize);
+                ArrayDeque<Timer<T>> bucket = buckets[level][slot];
+                if (bucket != null && !bucket.isEmpty()) {
+                    buckets[level][slot] = null;
+                    for (Timer<T> timer : bucket) {
+                        place(timer, expired);
+                    }
+                }
+            }
+        }
+
+        int slot = (int) (currentTick % wheelSize);
+        ArrayDeque<Timer<T>> bucket = buckets[0][slot];
+        if (bucket != null) {
+            buckets[0][slot] = null;
+            for (Timer<T> timer : bucket) {
+                expired.add(timer.payload);
+            }
+        }
+        currentTick++;
+    }
+
+    /**
+     * Размещает таймер на уровне, соответствующем оставшемуся времени
+     */
+    private void place(Timer<T> timer, List<T> expired) {
+        long deadlineTick = (timer.deadlineMs + tickMs - 1) / tickMs;
+        long delta = deadlineTick - currentTick;
+        if (delta < 0) {
+            expired.add(timer.payload);
+            return;
+        }
+        int level = 0;
+        while (level < levels - 1 && delta >= levelSpan[level + 1]) {
+            level++;
+        }
+        // Слишком далекие таймеры ждут в последней ячейке верхнего уровня и перераспределяются при каскаде
+        long targetTick = Math.min(deadlineTick, currentTick + levelSpan[levels] - levelSpan[levels - 1]);
+        int slot = (int) ((targetTick / levelSpan[level]) % wheelSize);
+        ArrayDeque<Timer<T>> bucket = buckets[level][slot];
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets[level][slot] = bucket;
+        }
+        bucket.add(timer);
+    }
+
+    /**
+     * Таймер колеса
+     */
+    private static final class Timer<T> {
+        final long deadlineMs;
+        final T payload;
+
+        Timer(long deadlineMs, T payload) {
+            this.deadlineMs = deadlineMs;
+            this.payload = payload;
+        }
+    }
+}
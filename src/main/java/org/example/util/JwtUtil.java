@@ -1,17 +1,26 @@
 package org.example.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.example.model.AuthPrincipal;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 /**
  * Утилита для работы с JWT (JSON Web Tokens).
  * Обеспечивает генерацию, верификацию и парсинг токенов.
+ * Токен разбирается и проверяется один раз: результат (AuthPrincipal) кэшируется
+ * до истечения токена, повторные запросы с тем же токеном не проверяют подпись заново.
+ * Кэш ограничен: он разбит на сегменты (LRU), при заполнении сегмента вытесняется
+ * давно не использованный токен.
  */
 public class JwtUtil {
     private static final Logger logger = Logger.getLogger(JwtUtil.class.getName());
@@ -19,9 +28,27 @@ public class JwtUtil {
     // Время жизни токена: 24 часа
     private static final long EXPIRATION_TIME = 24 * 60 * 60 * 1000;
 
+    // Максимальное число проверенных токенов в кэше и число его сегментов
+    private static final int MAX_CACHED_TOKENS = 10_000;
+    private static final int CACHE_STRIPES = 16;
+
     // Секретный ключ для подписи токенов (генерируется автоматически)
     private static final Key key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
 
+    // Парсер потокобезопасен и создается один раз
+    private static final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(key)
+            .build();
+
+    // Кэш проверенных токенов: ключ - сегмент подписи токена (base64url-представление ее байтов)
+    private final TokenCache[] verifiedTokens = new TokenCache[CACHE_STRIPES];
+
+    public JwtUtil() {
+        for (int i = 0; i < CACHE_STRIPES; i++) {
+            verifiedTokens[i] = new TokenCache(MAX_CACHED_TOKENS / CACHE_STRIPES);
+        }
+    }
+
     /**
      * Генерирует JWT-токен для пользователя
      * @param username имя пользователя
@@ -42,16 +69,56 @@ public class JwtUtil {
     }
 
     /**
-     * Парсит и возвращает claims из токена
+     * Проверяет токен и возвращает данные пользователя.
+     * Проверенные токены берутся из кэша, пока не истекут.
      * @param token JWT-токен
-     * @return объект claims с данными токена
+     * @return данные пользователя или пустой Optional, если токен поврежден или истек
      */
-    private Claims parseToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)                 // Установка ключа проверки
-                .build()
-                .parseClaimsJws(token)              // Парсинг токена
-                .getBody();
+    public Optional<AuthPrincipal> verify(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        String signature = signatureOf(token);
+
+        if (signature != null) {
+            TokenCache stripe = stripeFor(signature);
+            CachedToken cached;
+            synchronized (stripe) {
+                cached = stripe.get(signature);
+            }
+            // Сравнение всего токена исключает подмену заголовка или claims при той же подписи
+            if (cached != null && cached.token.equals(token)) {
+                if (!cached.principal.isExpired(now)) {
+                    return Optional.of(cached.principal);
+                }
+                synchronized (stripe) {
+                    stripe.remove(signature, cached);
+                }
+                return Optional.empty();
+            }
+        }
+
+        AuthPrincipal principal;
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            Date expiration = claims.getExpiration();
+            principal = new AuthPrincipal(
+                    claims.getSubject(),
+                    claims.get("role", String.class),
+                    expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+        } catch (Exception e) {
+            logger.warning("Недействительный JWT токен: " + e.getMessage());
+            return Optional.empty();
+        }
+
+        if (signature != null) {
+            TokenCache stripe = stripeFor(signature);
+            synchronized (stripe) {
+                stripe.put(signature, new CachedToken(token, principal));
+            }
+        }
+        return Optional.of(principal);
     }
 
     /**
@@ -60,35 +127,72 @@ public class JwtUtil {
      * @return true если токен валиден, false если поврежден или истек
      */
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);         // Попытка парсинга
-            return true;
-        } catch (Exception e) {
-            logger.warning("Недействительный JWT токен: " + e.getMessage());
-            return false;
-        }
+        return verify(token).isPresent();
     }
 
     /**
      * Извлекает имя пользователя из токена
      * @param token JWT-токен
-     * @return имя пользователя (subject)
+     * @return имя пользователя (subject) или null, если токен недействителен
      */
     public String getUsername(String token) {
-        Claims claims = parseToken(token);
-        return claims.getSubject();
+        return verify(token).map(AuthPrincipal::getUsername).orElse(null);
     }
 
     /**
      * Извлекает роль пользователя из токена
      * @param token JWT-токен
-     * @return роль пользователя
+     * @return роль пользователя или null, если токен недействителен
      */
     public String getRole(String token) {
-        Claims claims = parseToken(token);
-        return (String) claims.get("role");
+        return verify(token).map(AuthPrincipal::getRole).orElse(null);
+    }
+
+    private TokenCache stripeFor(String signature) {
+        return verifiedTokens[Math.floorMod(signature.hashCode(), CACHE_STRIPES)];
+    }
+
+    /**
+     * Возвращает сегмент подписи токена (после последней точки)
+     */
+    private static String signatureOf(String token) {
+        int dot = token.lastIndexOf('.');
+        if (dot < 0 || dot == token.length() - 1) {
+            return null;
+        }
+        return token.substring(dot + 1);
+    }
+
+    /**
+     * Сегмент кэша: LinkedHashMap в порядке доступа, при переполнении вытесняется
+     * давно не использованный токен (O(1)). Доступ только под блокировкой сегмента.
+     */
+    private static final class TokenCache extends LinkedHashMap<String, CachedToken> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        TokenCache(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedToken> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Запись кэша проверенных токенов
+     */
+    private static final class CachedToken {
+        final String token;
+        final AuthPrincipal principal;
+
+        CachedToken(String token, AuthPrincipal principal) {
+            this.token = token;
+            this.principal = principal;
+        }
     }
 }
@@ -0,0 +1,214 @@
+package org.example.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Генератор цифровых OTP-кодов, общий для приложения.
+ * - набор независимых DRBG (SecureRandom "DRBG") по сегментам (striping), поток выбирает
+ *   сегмент по своему идентификатору, поэтому потоки почти не конкурируют за блокировку
+ * - случайные байты берутся из DRBG порциями и превращаются в цифры отбраковкой
+ *   (байты 250-255 отбрасываются), поэтому все цифры равновероятны
+ * - код собирается в буфере символов сегмента, без StringBuilder
+ * - DRBG сегментов периодически пересеиваются фоновым потоком, вне потоков обработки запросов;
+ *   если DRBG недоступен и запасной SecureRandom не поддерживает пересев, пересев отключается
+ * - опционально фоновый поток заранее заполняет кольцо готовых кодов,
+ *   и при всплеске запросов код берется из кольца
+ * Настройки берутся из файла otp_generator.properties.
+ */
+public class OtpCodeGenerator {
+    private static final Logger logger = Logger.getLogger(OtpCodeGenerator.class.getName());
+
+    // Максимальная длина кода (размер буфера символов сегмента)
+    private static final int MAX_LENGTH = 32;
+    // Размер порции случайных байтов сегмента
+    private static final int RANDOM_BYTES = 512;
+    // Граница отбраковки: 250 - наибольшее кратное 10 число, не превышающее 256
+    private static final int REJECT_FROM = 250;
+
+    private final Stripe[] stripes;
+    private final long reseedIntervalMs;
+    private final BlockingQueue<String> prefilled;
+    private final Thread worker;
+    private volatile boolean running;
+    // Длина кодов, заполняющих кольцо (последняя запрошенная)
+    private volatile int prefillLength = 6;
+
+    /**
+     * Конструктор. Загружает настройки из otp_generator.properties и создает DRBG сегментов.
+     */
+    public OtpCodeGenerator() {
+        Properties config = loadConfig();
+        int stripeCount = Integer.parseInt(config.getProperty("generator.stripes", "0"));
+        if (stripeCount <= 0) {
+            stripeCount = Runtime.getRuntime().availableProcessors() * 2;
+        }
+        // Степень двойки для выбора сегмента маской
+        stripeCount = Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(newDrbg());
+        }
+        this.reseedIntervalMs = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(config.getProperty("generator.reseed_interval_seconds", "600")));
+        boolean prefill = Boolean.parseBoolean(config.getProperty("generator.prefill.enabled", "false"));
+        this.prefilled = prefill
+                ? new ArrayBlockingQueue<>(Integer.parseInt(config.getProperty("generator.prefill.size", "4096")))
+                : null;
+        this.worker = new Thread(this::runWorker, "otp-code-generator");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Загружает параметры из файла otp_generator.properties.
+     * Если файл не найден - используются значения по умолчанию.
+     */
+    private Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("otp_generator.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка загрузки конфигурации генератора OTP", e);
+        }
+        return props;
+    }
+
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            logger.log(Level.WARNING, "DRBG недоступен, используется SecureRandom по умолчанию", e);
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * Запуск фонового потока: пересев DRBG и заполнение кольца готовых кодов
+     */
+    public void start() {
+        running = true;
+        worker.start();
+        logger.info("Генератор OTP запущен, сегментов: " + stripes.length
+                + (prefilled != null ? ", кольцо готовых кодов: " + prefilled.remainingCapacity() : ""));
+    }
+
+    /**
+     * Остановка фонового потока
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    /**
+     * Генерирует случайный цифровой код
+     * @param length длина кода
+     * @return строка из length цифр
+     */
+    public String generate(int length) {
+        if (length <= 0 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Недопустимая длина OTP-кода: " + length);
+        }
+        if (prefilled != null) {
+            prefillLength = length;
+            String code = prefilled.poll();
+            // Коды прежней длины (после смены конфигурации) отбрасываются
+            if (code != null && code.length() == length) {
+                return code;
+            }
+        }
+        return stripeForCurrentThread().generate(length);
+    }
+
+    private Stripe stripeForCurrentThread() {
+        long id = Thread.currentThread().getId();
+        return stripes[(int) (id ^ (id >>> 32)) & (stripes.length - 1)];
+    }
+
+    private void runWorker() {
+        long nextReseed = System.currentTimeMillis() + reseedIntervalMs;
+        int next = 0;
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextReseed) {
+                    boolean reseeded = true;
+                    for (Stripe stripe : stripes) {
+                        reseeded &= stripe.reseed();
+                    }
+                    if (reseeded) {
+                        nextReseed = System.currentTimeMillis() + reseedIntervalMs;
+                    } else {
+                        logger.warning("SecureRandom генератора OTP не поддерживает пересев, пересев отключен");
+                        nextReseed = Long.MAX_VALUE;
+                    }
+                }
+                if (prefilled != null) {
+                    // Заполнение по кругу разными сегментами; ожидание, пока в кольце нет места
+                    String code = stripes[next++ & (stripes.length - 1)].generate(prefillLength);
+                    prefilled.offer(code, Math.max(1, nextReseed - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS);
+                } else {
+                    TimeUnit.MILLISECONDS.sleep(Math.max(1, nextReseed - System.currentTimeMillis()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Ошибка в фоновом потоке генератора OTP", e);
+            }
+        }
+    }
+
+    /**
+     * Сегмент генератора: DRBG, порция случайных байтов и буфер символов кода
+     */
+    private static final class Stripe {
+        private final SecureRandom random;
+        private final byte[] bytes = new byte[RANDOM_BYTES];
+        private final char[] chars = new char[MAX_LENGTH];
+        private int position = RANDOM_BYTES;
+
+        Stripe(SecureRandom random) {
+            this.random = random;
+        }
+
+        synchronized String generate(int length) {
+            int filled = 0;
+            while (filled < length) {
+                if (position == RANDOM_BYTES) {
+                    random.nextBytes(bytes);
+                    position = 0;
+                }
+                int value = bytes[position++] & 0xFF;
+                if (value < REJECT_FROM) {
+                    chars[filled++] = (char) ('0' + value % 10);
+                }
+            }
+            return new String(chars, 0, length);
+        }
+
+        /**
+         * @return false, если SecureRandom не поддерживает пересев (запасной вместо DRBG)
+         */
+        synchronized boolean reseed() {
+            try {
+                random.reseed();
+            } catch (UnsupportedOperationException e) {
+                return false;
+            }
+            // Байты, полученные до пересева, не используются
+            position = RANDOM_BYTES;
+            return true;
+        }
+    }
+}
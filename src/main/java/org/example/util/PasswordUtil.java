@@ -2,7 +2,6 @@ package org.example.util;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -12,7 +11,7 @@ import java.util.logging.Logger;
  * Обеспечивает:
  * - Хеширование паролей с использованием SHA-256
  * - Верификацию паролей
- * - Генерацию случайных OTP-кодов
+ * - Генерацию случайных OTP-кодов (через общий OtpCodeGenerator)
  */
 public class PasswordUtil {
     private static final Logger logger = Logger.getLogger(PasswordUtil.class.getName());
@@ -20,6 +19,15 @@ public class PasswordUtil {
     // Внимание: в production-среде используйте уникальную соль для каждого пользователя
     private static final String SALT = "OtpServiceSalt";
 
+    private final OtpCodeGenerator codeGenerator;
+
+    /**
+     * @param codeGenerator общий генератор OTP-кодов
+     */
+    public PasswordUtil(OtpCodeGenerator codeGenerator) {
+        this.codeGenerator = codeGenerator;
+    }
+
     /**
      * Хеширует пароль с использованием SHA-256 и статической соли
      * @param password пароль в открытом виде
@@ -55,11 +63,6 @@ public class PasswordUtil {
      * @return строка с цифровым кодом
      */
     public String generateOtp(int length) {
-        SecureRandom random = new SecureRandom(); // Криптографически безопасный генератор
-        StringBuilder otp = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            otp.append(random.nextInt(10)); // Генерация цифр от 0 до 9
-        }
-        return otp.toString();
+        return codeGenerator.generate(length);
     }
 }